@@ -1,28 +1,95 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 public class FractalGenerator extends JFrame {
     private JPanel controlPanel;
     private JPanel fractalPanel;
     private BufferedImage fractalImage;
     private JComboBox<String> fractalTypeCombo;
+    private JComboBox<String> iterationModeCombo;
     private JSlider maxIterationsSlider;
     private JSlider zoomSlider;
     private JLabel statusLabel;
-    private double centerX = 0;
-    private double centerY = 0;
+    // Kept in arbitrary precision so deep zooms do not lose the view position
+    private BigDecimal centerX = BigDecimal.ZERO;
+    private BigDecimal centerY = BigDecimal.ZERO;
     private double zoom = 1.0;
     private int maxIterations = 100;
-    private boolean isRendering = false;
-    private ExecutorService executor;
+    // Finished tiles, reused when panning back or revisiting a view (-Dfractal.tileCacheMB sets the budget)
+    private final TileCache tileCache = new TileCache(Long.getLong("fractal.tileCacheMB", 64) << 20);
+    // Renders the visible view ahead of off-screen prefetch and drops superseded work
+    private RenderScheduler scheduler;
     private Random random;
     private double[] randomParams;
     private int fractalVariant;
+    private Palette palette;
+    private String paletteName = PALETTES[0];
+    private boolean equalize = false;
+    private double cycleOffset = 0;
+    private Timer cycleTimer;
 
     // Visual constants
     private static final Color BACKGROUND_COLOR = new Color(245, 247, 250);
@@ -35,6 +102,28 @@ public class FractalGenerator extends JFrame {
     // Fractal parameters
     private static final int DEFAULT_WIDTH = 800;
     private static final int DEFAULT_HEIGHT = 600;
+    private static final int TILE_SIZE = 64;
+    // Progressive refinement: block size of each pass, coarsest first (TILE_SIZE must be a multiple)
+    private static final int[] PREVIEW_SCALES = { 8, 4, 2, 1 };
+    // Adaptive anti-aliasing: sub-samples per edge pixel in the UI, and the smooth
+    // iteration difference to a neighbour that marks a pixel as an edge
+    private static final int AA_SAMPLES = 9;
+    private static final double AA_THRESHOLD = 1.0;
+    // Rings of off-screen tiles rendered into the cache after each view completes
+    private static final int PREFETCH_RING = 1;
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+    // Escape-time kernel parameters
+    private static final double BAILOUT_SQ = 1 << 16; // Large radius keeps smooth colouring accurate
+    private static final double PERIOD_EPSILON = 1e-12;
+    private static final int PERIOD_CHECK_START = 8;
+    private static final double INTERIOR = Double.NEGATIVE_INFINITY;
+    private static final int INTERIOR_COLOR = Color.BLACK.getRGB();
+    private static final double LOG_2 = Math.log(2);
+    // Zoom beyond which Mandelbrot switches to the perturbation engine
+    private static final double DEEP_ZOOM_THRESHOLD = 1e8;
+    // SIMD escape-time kernel, or null to use the scalar kernels (-Dfractal.simd=false forces scalar)
+    private static final EscapeKernel VECTOR_KERNEL = loadVectorKernel();
     private static final String[] FRACTAL_TYPES = {
             "Mandelbrot Set",
             "Julia Set",
@@ -42,6 +131,26 @@ public class FractalGenerator extends JFrame {
             "Tricorn",
             "Random Fractal"
     };
+    // Colour ramps selectable independently of the fractal type
+    private static final String[] PALETTES = {
+            "Default",
+            "Blue-Gold",
+            "Cyan-Magenta",
+            "Fire",
+            "Teal",
+            "Warm",
+            "Cool",
+            "Nature",
+            "Sunset"
+    };
+    private static final String[] COLORINGS = {
+            "Smooth",
+            "Histogram Equalized"
+    };
+    private static final String[] ITERATION_MODES = {
+            "Periodic Boundary",
+            "Escape Time"
+    };
 
     // Enhanced visual constants
     private static final Color DARK_BG = new Color(33, 33, 33);
@@ -52,9 +161,23 @@ public class FractalGenerator extends JFrame {
 
     private JProgressBar progressBar;
     private boolean isDarkMode = true;
-    private int currentRow = 0;
+    private boolean antialias = false;
+    private boolean subdivide = false;
     private Timer animationTimer;
-    private BufferedImage tempImage;
+
+    // Backing raster of fractalImage; tiles write straight into it instead of setRGB
+    private int[] pixelBuffer;
+    // Rows written since the last preview repaint, swapped out by the animation timer
+    private final AtomicInteger dirtyTop = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger dirtyBottom = new AtomicInteger(-1);
+    // Smooth iteration values behind the image, one field per tile of the latest render,
+    // so colour changes only re-run the colouring. Shading into the raster holds
+    // rasterLock so a recolour and a finishing tile never mix colourings.
+    private FractalView frameView;
+    private List<Rectangle> frameTiles = new ArrayList<>();
+    private TileField[] frameFields = new TileField[0];
+    private volatile Coloring coloring;
+    private final Object rasterLock = new Object();
 
     public FractalGenerator() {
         setTitle("Fractal Explorer");
@@ -62,7 +185,8 @@ public class FractalGenerator extends JFrame {
         setLayout(new BorderLayout(PADDING, PADDING));
         getContentPane().setBackground(BACKGROUND_COLOR);
 
-        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        // One render thread per core, fed from a shared priority queue
+        scheduler = new RenderScheduler(Runtime.getRuntime().availableProcessors());
         random = new Random();
         randomParams = new double[6];
         generateRandomParameters();
@@ -111,7 +235,7 @@ public class FractalGenerator extends JFrame {
 
         // Initialize fractal images
         fractalImage = new BufferedImage(DEFAULT_WIDTH, DEFAULT_HEIGHT, BufferedImage.TYPE_INT_RGB);
-        tempImage = new BufferedImage(DEFAULT_WIDTH, DEFAULT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        pixelBuffer = ((DataBufferInt) fractalImage.getRaster().getDataBuffer()).getData();
 
         // Setup animation timer
         setupAnimationTimer();
@@ -173,6 +297,12 @@ public class FractalGenerator extends JFrame {
         // Buttons panel
         addStyledButtons();
 
+        // Anti-aliasing toggle
+        addAntialiasToggle();
+
+        // Palette, equalisation and colour cycling (recolour only, no re-render)
+        addColoringControls();
+
         // Theme toggle
         addThemeToggle();
     }
@@ -191,6 +321,21 @@ public class FractalGenerator extends JFrame {
         typePanel.add(fractalTypeCombo);
         controlPanel.add(typePanel);
         controlPanel.add(Box.createVerticalStrut(PADDING));
+
+        // Iteration mode selector (Random Fractal always uses its own periodic maps)
+        JLabel modeLabel = createStyledLabel("Iteration Mode:");
+        iterationModeCombo = new JComboBox<>(ITERATION_MODES);
+        iterationModeCombo.setFont(LABEL_FONT);
+        iterationModeCombo.setBackground(isDarkMode ? DARK_BG : Color.WHITE);
+        iterationModeCombo.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        iterationModeCombo.setFocusable(false);
+        iterationModeCombo.addActionListener(e -> generateFractal());
+
+        JPanel modePanel = createStyledPanel();
+        modePanel.add(modeLabel);
+        modePanel.add(iterationModeCombo);
+        controlPanel.add(modePanel);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
     }
 
     private void addStyledSliders() {
@@ -240,8 +385,8 @@ public class FractalGenerator extends JFrame {
 
         JButton resetButton = createStyledButton("Reset View");
         resetButton.addActionListener(e -> {
-            centerX = 0;
-            centerY = 0;
+            centerX = BigDecimal.ZERO;
+            centerY = BigDecimal.ZERO;
             zoom = 1.0;
             zoomSlider.setValue(0);
             generateFractal();
@@ -253,6 +398,95 @@ public class FractalGenerator extends JFrame {
         controlPanel.add(Box.createVerticalStrut(PADDING));
     }
 
+    private void addAntialiasToggle() {
+        JCheckBox antialiasBox = new JCheckBox("Anti-aliasing", antialias);
+        antialiasBox.setFont(LABEL_FONT);
+        antialiasBox.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        antialiasBox.setBackground(isDarkMode ? DARK_PANEL : PANEL_COLOR);
+        antialiasBox.setFocusable(false);
+        antialiasBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        antialiasBox.addActionListener(e -> {
+            antialias = antialiasBox.isSelected();
+            generateFractal();
+        });
+
+        controlPanel.add(antialiasBox);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
+
+        // Only affects escape-time Mandelbrot and Julia renders
+        JCheckBox subdivideBox = new JCheckBox("Rectangle Subdivision", subdivide);
+        subdivideBox.setFont(LABEL_FONT);
+        subdivideBox.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        subdivideBox.setBackground(isDarkMode ? DARK_PANEL : PANEL_COLOR);
+        subdivideBox.setFocusable(false);
+        subdivideBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        subdivideBox.addActionListener(e -> {
+            subdivide = subdivideBox.isSelected();
+            generateFractal();
+        });
+
+        controlPanel.add(subdivideBox);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
+    }
+
+    private void addColoringControls() {
+        JLabel paletteLabel = createStyledLabel("Palette:");
+        JComboBox<String> paletteCombo = new JComboBox<>(PALETTES);
+        paletteCombo.setFont(LABEL_FONT);
+        paletteCombo.setBackground(isDarkMode ? DARK_BG : Color.WHITE);
+        paletteCombo.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        paletteCombo.setFocusable(false);
+        paletteCombo.addActionListener(e -> {
+            paletteName = (String) paletteCombo.getSelectedItem();
+            recolor(false);
+        });
+
+        JPanel palettePanel = createStyledPanel();
+        palettePanel.add(paletteLabel);
+        palettePanel.add(paletteCombo);
+        controlPanel.add(palettePanel);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
+
+        JLabel coloringLabel = createStyledLabel("Colouring:");
+        JComboBox<String> coloringCombo = new JComboBox<>(COLORINGS);
+        coloringCombo.setFont(LABEL_FONT);
+        coloringCombo.setBackground(isDarkMode ? DARK_BG : Color.WHITE);
+        coloringCombo.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        coloringCombo.setFocusable(false);
+        coloringCombo.addActionListener(e -> {
+            equalize = "Histogram Equalized".equals(coloringCombo.getSelectedItem());
+            recolor(true);
+        });
+
+        JPanel coloringPanel = createStyledPanel();
+        coloringPanel.add(coloringLabel);
+        coloringPanel.add(coloringCombo);
+        controlPanel.add(coloringPanel);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
+
+        // Colour cycling shifts the palette along the stored values, one full period every 10 s
+        cycleTimer = new Timer(40, e -> {
+            cycleOffset += Palette.PERIOD * frameView.maxIterations / 250;
+            recolor(false);
+        });
+        JCheckBox cycleBox = new JCheckBox("Cycle Colours", false);
+        cycleBox.setFont(LABEL_FONT);
+        cycleBox.setForeground(isDarkMode ? LIGHT_TEXT : Color.BLACK);
+        cycleBox.setBackground(isDarkMode ? DARK_PANEL : PANEL_COLOR);
+        cycleBox.setFocusable(false);
+        cycleBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        cycleBox.addActionListener(e -> {
+            if (cycleBox.isSelected()) {
+                cycleTimer.start();
+            } else {
+                cycleTimer.stop();
+            }
+        });
+
+        controlPanel.add(cycleBox);
+        controlPanel.add(Box.createVerticalStrut(PADDING));
+    }
+
     private void addThemeToggle() {
         JButton themeToggle = createStyledButton(isDarkMode ? "Light Mode" : "Dark Mode");
         themeToggle.addActionListener(e -> {
@@ -326,12 +560,11 @@ public class FractalGenerator extends JFrame {
 
     private void setupAnimationTimer() {
         animationTimer = new Timer(16, e -> { // ~60 FPS
-            if (tempImage != null) {
-                Graphics g = fractalPanel.getGraphics();
-                if (g != null) {
-                    g.drawImage(tempImage, 0, 0, null);
-                    g.dispose();
-                }
+            // Swap out the dirty row range and repaint only that band
+            int top = dirtyTop.getAndSet(Integer.MAX_VALUE);
+            int bottom = dirtyBottom.getAndSet(-1);
+            if (bottom >= top) {
+                fractalPanel.repaint(0, top, DEFAULT_WIDTH, bottom - top + 1);
             }
         });
     }
@@ -356,318 +589,2946 @@ public class FractalGenerator extends JFrame {
                 // Update center point based on click location
                 double dx = (e.getX() - DEFAULT_WIDTH / 2.0) / (DEFAULT_WIDTH / 4.0) / zoom;
                 double dy = (e.getY() - DEFAULT_HEIGHT / 2.0) / (DEFAULT_HEIGHT / 4.0) / zoom;
-                centerX += dx;
-                centerY += dy;
+                panBy(dx, dy);
                 generateFractal();
             }
         });
+
+        // Mouse wheel zooms about the cursor, keeping the point under it fixed
+        fractalPanel.addMouseWheelListener(e -> {
+            double factor = Math.pow(2, -e.getPreciseWheelRotation());
+            double dx = (e.getX() - DEFAULT_WIDTH / 2.0) / (DEFAULT_WIDTH / 4.0) / zoom * (1 - 1 / factor);
+            double dy = (e.getY() - DEFAULT_HEIGHT / 2.0) / (DEFAULT_HEIGHT / 4.0) / zoom * (1 - 1 / factor);
+            panBy(dx, dy);
+            zoom *= factor;
+            generateFractal();
+        });
+    }
+
+    private void panBy(double dx, double dy) {
+        MathContext mc = precisionFor(zoom);
+        centerX = centerX.add(new BigDecimal(dx), mc);
+        centerY = centerY.add(new BigDecimal(dy), mc);
+    }
+
+    // Enough significant digits to resolve a pixel at this zoom, plus guard digits
+    private static MathContext precisionFor(double zoom) {
+        return new MathContext(Math.max(20, (int) Math.ceil(Math.log10(Math.max(zoom, 1))) + 20));
     }
 
     private void generateFractal() {
-        if (isRendering)
-            return;
+        // A new request supersedes whatever is in flight: its queued tiles are dropped and
+        // running ones stop at their next row
+        int generation = scheduler.newGeneration();
 
-        isRendering = true;
-        currentRow = 0;
         statusLabel.setText("Rendering...");
+
+        String fractalType = (String) fractalTypeCombo.getSelectedItem();
+        boolean escapeTime = "Escape Time".equals(iterationModeCombo.getSelectedItem());
+        // Past double precision, render Mandelbrot as perturbations around one
+        // high-precision orbit of the view centre
+        ReferenceOrbit reference = null;
+        if (escapeTime && fractalType.equals("Mandelbrot Set") && zoom > DEEP_ZOOM_THRESHOLD) {
+            reference = new ReferenceOrbit(centerX, centerY, maxIterations, precisionFor(zoom));
+        }
+
+        FractalView view = new FractalView(fractalType, fractalVariant, randomParams, maxIterations,
+                centerX.doubleValue(), centerY.doubleValue(), zoom, DEFAULT_WIDTH, DEFAULT_HEIGHT,
+                escapeTime, reference, antialias ? AA_SAMPLES : 0, subdivide);
+        List<Rectangle> tiles = createTiles(view);
+
+        progressBar.setMaximum(tiles.size() * PREVIEW_SCALES.length);
         progressBar.setValue(0);
 
         // Start animation
         animationTimer.start();
 
-        executor.submit(() -> {
-            try {
-                String fractalType = (String) fractalTypeCombo.getSelectedItem();
-
-                // Create a temporary image for animation
-                Graphics2D g2d = tempImage.createGraphics();
-                g2d.setColor(isDarkMode ? DARK_BG : BACKGROUND_COLOR);
-                g2d.fillRect(0, 0, DEFAULT_WIDTH, DEFAULT_HEIGHT);
-                g2d.dispose();
-
-                for (int y = 0; y < DEFAULT_HEIGHT; y++) {
-                    for (int x = 0; x < DEFAULT_WIDTH; x++) {
-                        double zx = (x - DEFAULT_WIDTH / 2.0) / (DEFAULT_WIDTH / 4.0) / zoom + centerX;
-                        double zy = (y - DEFAULT_HEIGHT / 2.0) / (DEFAULT_HEIGHT / 4.0) / zoom + centerY;
-
-                        int color;
-                        switch (fractalType) {
-                            case "Julia Set":
-                                color = computeJuliaSet(zx, zy);
-                                break;
-                            case "Burning Ship":
-                                color = computeBurningShip(zx, zy);
-                                break;
-                            case "Tricorn":
-                                color = computeTricorn(zx, zy);
-                                break;
-                            case "Random Fractal":
-                                color = computeRandomFractal(zx, zy);
-                                break;
-                            default:
-                                color = computeMandelbrot(zx, zy);
+        // Passes build on each other through render-private tile fields, so values written
+        // late by a superseded render can never leak into this render's refinement.
+        // Until this frame is complete, equalisation keeps the previous frame's histogram.
+        TileField[] tileFields = new TileField[tiles.size()];
+        synchronized (rasterLock) {
+            frameView = view;
+            frameTiles = tiles;
+            frameFields = tileFields;
+            coloring = createColoring(view, coloring == null ? null : coloring.equalizer);
+        }
+        boolean[] cached = new boolean[tiles.size()];
+        renderPass(view, tiles, tileFields, cached, generation, 0, new AtomicBoolean());
+    }
+
+    // Renders every tile at PREVIEW_SCALES[pass] and chains the next, finer pass
+    // once the last tile of this one completes. Tiles found in the cache on the first
+    // pass are copied straight to the screen and skipped by the later passes.
+    private void renderPass(FractalView view, List<Rectangle> tiles, TileField[] tileFields, boolean[] cached,
+            int generation, int pass, AtomicBoolean failed) {
+        int scale = PREVIEW_SCALES[pass];
+        boolean lastPass = pass + 1 == PREVIEW_SCALES.length;
+        int tileCount = tiles.size();
+        int progressBase = pass * tileCount;
+        AtomicInteger tilesDone = new AtomicInteger();
+        BooleanSupplier cancelled = () -> !scheduler.isCurrent(generation);
+
+        // One job per tile, queued centre-out
+        for (int i = 0; i < tileCount; i++) {
+            int index = i;
+            Rectangle tile = tiles.get(i);
+            scheduler.submit(generation, RenderScheduler.VISIBLE, () -> {
+                if (cancelled.getAsBoolean())
+                    return;
+
+                try {
+                    TileKey key = view.cacheKey(tile);
+                    TileField field = tileFields[index];
+                    if (pass == 0 && key != null) {
+                        TileField hit = tileCache.get(key);
+                        if (hit != null) {
+                            field = hit;
+                            cached[index] = true;
                         }
+                    }
 
-                        tempImage.setRGB(x, y, color);
-                        fractalImage.setRGB(x, y, color);
+                    if (!cached[index]) {
+                        if (field == null) {
+                            field = new TileField(tile.width * tile.height);
+                        }
+                        boolean complete = lastPass && view.antialiasSamples > 0
+                                ? renderTileAntialiased(view, tile, field, pass > 0, cancelled)
+                                : renderTile(view, tile, scale, pass > 0, field.smooth, cancelled);
+                        if (!complete)
+                            return; // Superseded mid-tile; this generation never finishes
+                        if (lastPass && key != null) {
+                            tileCache.put(key, field);
+                        }
                     }
 
-                    final int progress = y;
-                    SwingUtilities.invokeLater(() -> {
-                        progressBar.setValue(progress);
-                        progressBar.setString(String.format("%.1f%%", (progress * 100.0) / DEFAULT_HEIGHT));
-                    });
+                    if (pass == 0 || !cached[index]) {
+                        // Tiles are disjoint; the lock orders this against a recolour and against
+                        // a newer render taking over the raster, which bumps the generation first
+                        synchronized (rasterLock) {
+                            if (cancelled.getAsBoolean())
+                                return; // Finished just after being superseded: keep it off screen
+                            tileFields[index] = field;
+                            coloring.shade(field, tile, pixelBuffer, view.width, view.height);
+                        }
+                        markDirty(Math.max(tile.y, 0), Math.min(tile.y + tile.height, view.height) - 1);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failed.set(true);
                 }
 
+                int done = tilesDone.incrementAndGet();
+                int progress = progressBase + done;
                 SwingUtilities.invokeLater(() -> {
-                    fractalPanel.repaint();
-                    if (fractalTypeCombo.getSelectedItem().equals("Random Fractal")) {
-                        statusLabel.setText("Random Fractal Type " + (fractalVariant + 1));
-                    } else {
-                        statusLabel.setText("Ready");
+                    if (scheduler.isCurrent(generation)) {
+                        progressBar.setValue(progress);
+                        progressBar.setString(String.format("%.1f%%", (progress * 100.0) / progressBar.getMaximum()));
                     }
-                    progressBar.setValue(DEFAULT_HEIGHT);
-                    progressBar.setString("100%");
-                    isRendering = false;
-                    animationTimer.stop();
                 });
-            } catch (Exception e) {
-                e.printStackTrace();
-                statusLabel.setText("Error occurred");
-                isRendering = false;
-                animationTimer.stop();
+
+                if (done == tileCount) {
+                    if (!lastPass) {
+                        renderPass(view, tiles, tileFields, cached, generation, pass + 1, failed);
+                    } else {
+                        SwingUtilities.invokeLater(() -> finishRender(view, generation, failed.get()));
+                    }
+                }
+            });
+        }
+    }
+
+    private void finishRender(FractalView view, int generation, boolean failed) {
+        if (!scheduler.isCurrent(generation))
+            return;
+
+        if (equalize) {
+            // The histogram of the finished frame replaces the one borrowed from the last
+            recolor(true);
+        }
+        fractalPanel.repaint();
+        if (failed) {
+            statusLabel.setText("Error occurred");
+        } else if (view.fractalType.equals("Random Fractal")) {
+            statusLabel.setText("Random Fractal Type " + (view.fractalVariant + 1));
+        } else {
+            statusLabel.setText("Ready");
+        }
+        progressBar.setValue(progressBar.getMaximum());
+        progressBar.setString("100%");
+        animationTimer.stop();
+
+        if (!failed) {
+            prefetch(view, generation);
+        }
+    }
+
+    // Once the view is complete, renders the ring of tiles just outside it into the
+    // cache at low priority, so a pan in any direction starts from finished tiles
+    private void prefetch(FractalView view, int generation) {
+        if (!view.cacheable)
+            return;
+
+        BooleanSupplier cancelled = () -> !scheduler.isCurrent(generation);
+        for (Rectangle tile : prefetchTiles(view)) {
+            TileKey key = view.cacheKey(tile);
+            if (tileCache.get(key) != null)
+                continue;
+            scheduler.submit(generation, RenderScheduler.PREFETCH, () -> {
+                if (cancelled.getAsBoolean())
+                    return;
+                try {
+                    TileField field = new TileField(tile.width * tile.height);
+                    boolean complete = view.antialiasSamples > 0
+                            ? renderTileAntialiased(view, tile, field, false, cancelled)
+                            : renderTile(view, tile, 1, false, field.smooth, cancelled);
+                    if (complete) {
+                        tileCache.put(key, field);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    // Tiles of the global grid within PREFETCH_RING tiles of the viewport but not on it,
+    // nearest the centre first
+    private static List<Rectangle> prefetchTiles(FractalView view) {
+        int firstX = -(int) Math.floorMod(view.originX, (long) TILE_SIZE);
+        int firstY = -(int) Math.floorMod(view.originY, (long) TILE_SIZE);
+        int ring = PREFETCH_RING * TILE_SIZE;
+
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int y = firstY - ring; y < view.height + ring; y += TILE_SIZE) {
+            for (int x = firstX - ring; x < view.width + ring; x += TILE_SIZE) {
+                boolean visible = x + TILE_SIZE > 0 && x < view.width && y + TILE_SIZE > 0 && y < view.height;
+                if (!visible) {
+                    tiles.add(new Rectangle(x, y, TILE_SIZE, TILE_SIZE));
+                }
             }
-        });
+        }
+
+        double cx = view.width / 2.0;
+        double cy = view.height / 2.0;
+        tiles.sort(Comparator.comparingDouble(t -> Point2D.distanceSq(t.getCenterX(), t.getCenterY(), cx, cy)));
+        return tiles;
     }
 
-    private int computeMandelbrot(double zx, double zy) {
-        double x = 0;
-        double y = 0;
-        int iteration = 0;
-        double smooth = 0;
+    // Colouring for the current palette controls; equalizer is kept as given
+    private Coloring createColoring(FractalView view, Equalizer equalizer) {
+        palette = paletteFor(paletteName, view.fractalType, view.fractalVariant, view.randomParams,
+                view.maxIterations, palette);
+        return new Coloring(palette, cycleOffset, equalize ? equalizer : null);
+    }
 
-        while (iteration < maxIterations) {
-            double xtemp = x * x - y * y + zx;
-            y = 2 * x * y + zy;
-            x = xtemp;
+    // Recolours the displayed frame from its stored fields without iterating. Passing
+    // measure rebuilds the equalisation histogram from the frame first.
+    private void recolor(boolean measure) {
+        synchronized (rasterLock) {
+            FractalView view = frameView;
+            Equalizer equalizer = coloring.equalizer;
+            if (equalize && (measure || equalizer == null)) {
+                try {
+                    equalizer = Equalizer.of(this::forEachFrameValue);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // In-memory fields never throw
+                }
+            }
 
-            // Smooth iteration count for continuous coloring
-            smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+            coloring = createColoring(view, equalizer);
+            for (int i = 0; i < frameFields.length; i++) {
+                if (frameFields[i] != null) {
+                    coloring.shade(frameFields[i], frameTiles.get(i), pixelBuffer, view.width, view.height);
+                }
+            }
+        }
+        fractalPanel.repaint();
+    }
 
-            // Use periodic boundary instead of escape condition
-            if (x * x + y * y > 4) {
-                x = Math.sin(x);
-                y = Math.sin(y);
+    // Every on-screen smooth value of the current frame (caller holds rasterLock)
+    private void forEachFrameValue(DoubleConsumer action) {
+        for (int i = 0; i < frameFields.length; i++) {
+            TileField field = frameFields[i];
+            Rectangle tile = frameTiles.get(i);
+            if (field == null)
+                continue;
+            for (int y = Math.max(tile.y, 0); y < Math.min(tile.y + tile.height, frameView.height); y++) {
+                for (int x = Math.max(tile.x, 0); x < Math.min(tile.x + tile.width, frameView.width); x++) {
+                    action.accept(field.smooth[(y - tile.y) * tile.width + x - tile.x]);
+                }
             }
+        }
+    }
 
-            iteration++;
+    // Covers the viewport with TILE_SIZE squares, ordered centre-out so the middle of
+    // the view (where the user clicked) fills in first. Cacheable views use whole tiles
+    // of the global pixel grid (partly off-screen at the edges) so they can be reused
+    // after a pan; other views clip tiles to the screen.
+    private static List<Rectangle> createTiles(FractalView view) {
+        int firstX = -(int) Math.floorMod(view.originX, (long) TILE_SIZE);
+        int firstY = -(int) Math.floorMod(view.originY, (long) TILE_SIZE);
+        boolean clip = !view.cacheable;
+
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int y = firstY; y < view.height; y += TILE_SIZE) {
+            for (int x = firstX; x < view.width; x += TILE_SIZE) {
+                tiles.add(clip
+                        ? new Rectangle(x, y, Math.min(TILE_SIZE, view.width - x), Math.min(TILE_SIZE, view.height - y))
+                        : new Rectangle(x, y, TILE_SIZE, TILE_SIZE));
+            }
         }
 
-        return getColor(smooth);
+        double cx = view.width / 2.0;
+        double cy = view.height / 2.0;
+        tiles.sort(Comparator.comparingDouble(t -> Point2D.distanceSq(t.getCenterX(), t.getCenterY(), cx, cy)));
+        return tiles;
+    }
+
+    private void markDirty(int top, int bottom) {
+        dirtyTop.accumulateAndGet(top, Math::min);
+        dirtyBottom.accumulateAndGet(bottom, Math::max);
+    }
+
+    // Renders a tile at full resolution into a new field
+    private static TileField renderTile(FractalView view, Rectangle tile) {
+        TileField field = new TileField(tile.width * tile.height);
+        if (view.antialiasSamples > 0) {
+            renderTileAntialiased(view, tile, field, false, NEVER_CANCELLED);
+        } else {
+            renderTile(view, tile, 1, false, field.smooth, NEVER_CANCELLED);
+        }
+        return field;
     }
 
-    private int computeJuliaSet(double zx, double zy) {
-        double cx = -0.4;
-        double cy = 0.6;
-        int iteration = 0;
-        double smooth = 0;
+    // Full-resolution render with adaptive anti-aliasing. The tile renders like any
+    // full-resolution pass (refining the previous one if there was one), then smooth
+    // values are added for a one-pixel apron around it; only pixels whose value differs
+    // sharply from a 4-neighbour (or that border the interior) are resampled with
+    // jittered sub-pixel samples, smooth regions keep their single sample. Returns
+    // false, leaving the field incomplete, when cancelled between rows.
+    private static boolean renderTileAntialiased(FractalView view, Rectangle tile, TileField field, boolean refine,
+            BooleanSupplier cancelled) {
+        if (!renderTile(view, tile, 1, refine, field.smooth, cancelled))
+            return false;
+
+        int w = tile.width + 2;
+        int h = tile.height + 2;
+        double[] smooth = new double[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                boolean apron = y == 0 || y == h - 1 || x == 0 || x == w - 1;
+                smooth[y * w + x] = apron ? view.computeSmooth(tile.x + x - 1, tile.y + y - 1)
+                        : field.smooth[(y - 1) * tile.width + x - 1];
+            }
+        }
 
-        while (iteration < maxIterations) {
-            double xtemp = zx * zx - zy * zy + cx;
-            zy = 2 * zx * zy + cy;
-            zx = xtemp;
+        int samples = view.samplesPerEdge();
+        int[] edges = new int[64];
+        float[] edgeSamples = new float[64 * samples];
+        int edgeCount = 0;
+        for (int y = 1; y <= tile.height; y++) {
+            if (cancelled.getAsBoolean())
+                return false;
+            for (int x = 1; x <= tile.width; x++) {
+                int i = y * w + x;
+                double s = smooth[i];
+                int pixel = (y - 1) * tile.width + x - 1;
+                if (isEdge(s, smooth[i - 1]) || isEdge(s, smooth[i + 1])
+                        || isEdge(s, smooth[i - w]) || isEdge(s, smooth[i + w])) {
+                    if (edgeCount == edges.length) {
+                        edges = Arrays.copyOf(edges, edgeCount * 2);
+                        edgeSamples = Arrays.copyOf(edgeSamples, edgeCount * 2 * samples);
+                    }
+                    view.supersample(tile.x + x - 1, tile.y + y - 1, edgeSamples, edgeCount * samples);
+                    edges[edgeCount++] = pixel;
+                }
+            }
+        }
+        field.setEdges(Arrays.copyOf(edges, edgeCount), Arrays.copyOf(edgeSamples, edgeCount * samples), samples);
+        return true;
+    }
 
-            smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(zx * zx + zy * zy))) / Math.log(2);
+    private static boolean isEdge(double a, double b) {
+        return (a == INTERIOR) != (b == INTERIOR) || Math.abs(a - b) > AA_THRESHOLD;
+    }
 
-            // Periodic wrapping
-            if (zx * zx + zy * zy > 4) {
-                zx = Math.tan(zx) / 2;
-                zy = Math.tan(zy) / 2;
+    // Samples one pixel per scale x scale block and fills the block with it. When
+    // refining, samples that fall on the previous pass's (twice as coarse) grid are
+    // already in the tile buffer and are skipped. Returns false when cancelled between rows.
+    private static boolean renderTile(FractalView view, Rectangle tile, int scale, boolean refine, float[] smooth,
+            BooleanSupplier cancelled) {
+        if (view.subdivides())
+            return renderTileSubdivided(view, tile, scale, refine, smooth, cancelled);
+
+        int coarser = scale * 2;
+        int right = tile.x + tile.width;
+        int bottom = tile.y + tile.height;
+        float[] row = new float[tile.width];
+
+        for (int y = tile.y; y < bottom; y += scale) {
+            if (cancelled.getAsBoolean())
+                return false;
+            int blockBottom = Math.min(y + scale, bottom);
+
+            // On rows of the coarser grid only the odd samples are new
+            boolean skipCoarse = refine && (y - tile.y) % coarser == 0;
+            int start = skipCoarse ? tile.x + scale : tile.x;
+            int step = skipCoarse ? coarser : scale;
+            int count = start < right ? (right - start + step - 1) / step : 0;
+            view.computeRow(start, y, step, count, row);
+
+            for (int k = 0; k < count; k++) {
+                int x = start + k * step;
+                int blockRight = Math.min(x + scale, right);
+                for (int by = y; by < blockBottom; by++) {
+                    int offset = (by - tile.y) * tile.width - tile.x;
+                    for (int bx = x; bx < blockRight; bx++) {
+                        smooth[offset + bx] = row[k];
+                    }
+                }
             }
+        }
+        return true;
+    }
 
-            iteration++;
+    // Mariani-Silver subdivision over the tile's samples (scale pixels apart): a
+    // rectangle whose border samples never escape lies entirely in the set, because the
+    // set has no holes, so its inside is filled without iterating. Other rectangles are
+    // halved along their longer side until they are small enough to sample directly.
+    // With smooth colouring escaped borders are never uniform, so only the interior is
+    // filled. Samples known from the previous pass are reused when refining.
+    private static boolean renderTileSubdivided(FractalView view, Rectangle tile, int scale, boolean refine,
+            float[] smooth, BooleanSupplier cancelled) {
+        int columns = (tile.width + scale - 1) / scale;
+        int rows = (tile.height + scale - 1) / scale;
+        SampleGrid grid = new SampleGrid(view, tile, scale, columns, rows);
+        if (refine) {
+            // The previous pass sampled every other column of every other row
+            for (int gy = 0; gy < rows; gy += 2) {
+                for (int gx = 0; gx < columns; gx += 2) {
+                    grid.set(gx, gy, smooth[gy * scale * tile.width + gx * scale]);
+                }
+            }
         }
 
-        return getColor(smooth);
+        if (!grid.subdivide(0, 0, columns - 1, rows - 1, cancelled))
+            return false;
+
+        for (int y = 0; y < tile.height; y++) {
+            for (int x = 0; x < tile.width; x++) {
+                smooth[y * tile.width + x] = grid.values[(y / scale) * columns + x / scale];
+            }
+        }
+        return true;
     }
 
-    private int computeBurningShip(double zx, double zy) {
-        double x = 0;
-        double y = 0;
-        int iteration = 0;
-        double smooth = 0;
+    // Samples of one tile at one scale, computed on first use
+    private static final class SampleGrid {
+        // Rectangles with a side this short (in samples) are computed sample by sample
+        private static final int MIN_SIDE = 4;
+        private static final float INTERIOR_SAMPLE = (float) INTERIOR;
+
+        final float[] values;
+        private final boolean[] known;
+        private final FractalView view;
+        private final Rectangle tile;
+        private final int scale;
+        private final int columns;
+
+        SampleGrid(FractalView view, Rectangle tile, int scale, int columns, int rows) {
+            this.view = view;
+            this.tile = tile;
+            this.scale = scale;
+            this.columns = columns;
+            this.values = new float[columns * rows];
+            this.known = new boolean[columns * rows];
+        }
+
+        void set(int gx, int gy, float value) {
+            values[gy * columns + gx] = value;
+            known[gy * columns + gx] = true;
+        }
+
+        float get(int gx, int gy) {
+            int i = gy * columns + gx;
+            if (!known[i]) {
+                set(gx, gy, (float) view.computeSmooth(tile.x + gx * scale, tile.y + gy * scale));
+            }
+            return values[i];
+        }
+
+        // Resolves every sample of the inclusive rectangle [x0, x1] x [y0, y1]
+        boolean subdivide(int x0, int y0, int x1, int y1, BooleanSupplier cancelled) {
+            if (cancelled.getAsBoolean())
+                return false;
 
-        while (iteration < maxIterations) {
-            double xtemp = x * x - y * y + zx;
-            y = Math.abs(2 * x * y) + zy;
-            x = xtemp;
+            if (x1 - x0 < MIN_SIDE || y1 - y0 < MIN_SIDE) {
+                for (int gy = y0; gy <= y1; gy++) {
+                    for (int gx = x0; gx <= x1; gx++) {
+                        get(gx, gy);
+                    }
+                }
+                return true;
+            }
+
+            boolean interior = true;
+            for (int gx = x0; gx <= x1; gx++) {
+                interior &= get(gx, y0) == INTERIOR_SAMPLE;
+                interior &= get(gx, y1) == INTERIOR_SAMPLE;
+            }
+            for (int gy = y0 + 1; gy < y1; gy++) {
+                interior &= get(x0, gy) == INTERIOR_SAMPLE;
+                interior &= get(x1, gy) == INTERIOR_SAMPLE;
+            }
 
-            smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+            if (interior) {
+                for (int gy = y0 + 1; gy < y1; gy++) {
+                    for (int gx = x0 + 1; gx < x1; gx++) {
+                        set(gx, gy, INTERIOR_SAMPLE);
+                    }
+                }
+                return true;
+            }
 
-            // Periodic transformation
-            if (x * x + y * y > 4) {
-                x = Math.cos(x);
-                y = Math.sin(y);
+            // Both halves share the dividing line, which is computed only once
+            if (x1 - x0 >= y1 - y0) {
+                int mid = (x0 + x1) / 2;
+                return subdivide(x0, y0, mid, y1, cancelled) && subdivide(mid, y0, x1, y1, cancelled);
             }
+            int mid = (y0 + y1) / 2;
+            return subdivide(x0, y0, x1, mid, cancelled) && subdivide(x0, mid, x1, y1, cancelled);
+        }
+    }
+
+    // Smooth iteration values of one tile. This is what gets cached and recoloured, so
+    // palette changes never iterate again. Edge pixels of anti-aliased tiles also keep
+    // their sub-samples and recolour like everything else.
+    private static final class TileField {
+        private static final int[] NO_EDGES = new int[0];
 
-            iteration++;
+        final float[] smooth;
+        int[] edges = NO_EDGES; // Indices into smooth of the supersampled pixels
+        float[] edgeSamples; // samplesPerEdge consecutive values per edge pixel
+        int samplesPerEdge;
+
+        TileField(int size) {
+            this.smooth = new float[size];
+        }
+
+        void setEdges(int[] edges, float[] edgeSamples, int samplesPerEdge) {
+            this.edgeSamples = edgeSamples;
+            this.samplesPerEdge = samplesPerEdge;
+            this.edges = edges;
         }
 
-        return getColor(smooth);
+        long sizeInBytes() {
+            return 4L * (smooth.length + edges.length + (edgeSamples == null ? 0 : edgeSamples.length));
+        }
     }
 
-    private int computeTricorn(double zx, double zy) {
-        double x = 0;
-        double y = 0;
-        int iteration = 0;
-        double smooth = 0;
+    // Runs render jobs on a fixed set of daemon threads, highest priority first: the
+    // visible view's tiles (in submission order, i.e. centre-out) ahead of off-screen
+    // prefetch. Every job belongs to a generation; starting a new generation drops all
+    // queued jobs of older ones, and running jobs poll isCurrent() to stop early.
+    private static final class RenderScheduler {
+        static final int VISIBLE = 0;
+        static final int PREFETCH = 1;
+
+        private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+        private final AtomicInteger generation = new AtomicInteger();
+        private final AtomicLong sequence = new AtomicLong();
+
+        RenderScheduler(int threads) {
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(this::work, "fractal-render-" + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        private void work() {
+            while (true) {
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    job.task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        // Supersedes everything submitted so far and returns the new generation
+        int newGeneration() {
+            int current = generation.incrementAndGet();
+            queue.removeIf(job -> job.generation != current);
+            return current;
+        }
+
+        boolean isCurrent(int generation) {
+            return this.generation.get() == generation;
+        }
 
-        while (iteration < maxIterations) {
-            double xtemp = x * x - y * y + zx;
-            y = -2 * x * y + zy;
-            x = xtemp;
+        void submit(int generation, int priority, Runnable task) {
+            if (isCurrent(generation)) {
+                queue.add(new Job(generation, priority, sequence.getAndIncrement(), task));
+            }
+        }
 
-            smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+        private static final class Job implements Comparable<Job> {
+            final int generation;
+            final int priority;
+            final long sequence;
+            final Runnable task;
+
+            Job(int generation, int priority, long sequence, Runnable task) {
+                this.generation = generation;
+                this.priority = priority;
+                this.sequence = sequence;
+                this.task = task;
+            }
 
-            // Periodic boundary
-            if (x * x + y * y > 4) {
-                x = Math.sin(x * Math.PI) / 2;
-                y = Math.cos(y * Math.PI) / 2;
+            @Override
+            public int compareTo(Job other) {
+                if (priority != other.priority)
+                    return Integer.compare(priority, other.priority);
+                return Long.compare(sequence, other.sequence);
             }
+        }
+    }
+
+    // Identifies one tile of the global pixel grid together with everything that
+    // determines its pixels
+    private static final class TileKey {
+        final String fractalType;
+        final int fractalVariant;
+        final double[] randomParams;
+        final int maxIterations;
+        final boolean escapeTime;
+        final double zoom;
+        final int width;
+        final int height;
+        final int antialiasSamples;
+        final boolean subdivide;
+        final long tileX;
+        final long tileY;
+
+        TileKey(FractalView view, long tileX, long tileY) {
+            // Variant and random parameters only affect the Random Fractal type
+            boolean random = view.fractalType.equals("Random Fractal");
+            this.fractalType = view.fractalType;
+            this.fractalVariant = random ? view.fractalVariant : 0;
+            this.randomParams = random ? view.randomParams : null;
+            this.maxIterations = view.maxIterations;
+            this.escapeTime = view.escapeTime;
+            this.zoom = view.zoom;
+            this.width = view.width;
+            this.height = view.height;
+            this.antialiasSamples = view.antialiasSamples;
+            this.subdivide = view.subdivides();
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
 
-            iteration++;
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey))
+                return false;
+            TileKey k = (TileKey) o;
+            return tileX == k.tileX && tileY == k.tileY
+                    && zoom == k.zoom
+                    && maxIterations == k.maxIterations
+                    && fractalVariant == k.fractalVariant
+                    && escapeTime == k.escapeTime
+                    && width == k.width && height == k.height
+                    && antialiasSamples == k.antialiasSamples
+                    && subdivide == k.subdivide
+                    && fractalType.equals(k.fractalType)
+                    && Arrays.equals(randomParams, k.randomParams);
         }
 
-        return getColor(smooth);
+        @Override
+        public int hashCode() {
+            int h = Objects.hash(fractalType, fractalVariant, maxIterations, escapeTime, zoom, width, height,
+                    antialiasSamples, subdivide, tileX, tileY);
+            return 31 * h + Arrays.hashCode(randomParams);
+        }
     }
 
-    private int computeRandomFractal(double zx, double zy) {
-        double x = zx;
-        double y = zy;
-        int iteration = 0;
-        double smooth = 0;
+    // LRU cache of finished full-resolution tile fields, bounded by a memory budget
+    private static final class TileCache {
+        private final long budgetBytes;
+        private long usedBytes;
+        private final LinkedHashMap<TileKey, TileField> tiles = new LinkedHashMap<>(256, 0.75f, true);
 
-        while (iteration < maxIterations) {
-            double xtemp = 0;
-            double ytemp = 0;
+        TileCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
 
-            switch (fractalVariant) {
-                case 0: // Periodic polynomial variation
-                    xtemp = Math.sin(x * x * x - 3 * x * y * y + randomParams[0] * x);
-                    ytemp = Math.cos(3 * x * x * y - y * y * y + randomParams[2] * y);
-                    break;
+        synchronized TileField get(TileKey key) {
+            return tiles.get(key);
+        }
 
-                case 1: // Periodic trigonometric variation
-                    xtemp = Math.sin(x * randomParams[0]) * Math.tanh(y * randomParams[1]);
-                    ytemp = Math.cos(x * randomParams[2]) * Math.tanh(y * randomParams[3]);
-                    break;
+        synchronized void put(TileKey key, TileField field) {
+            TileField previous = tiles.put(key, field);
+            if (previous != null) {
+                usedBytes -= previous.sizeInBytes();
+            }
+            usedBytes += field.sizeInBytes();
 
-                case 2: // Periodic exponential variation
-                    xtemp = Math.sin(Math.exp(x * randomParams[0])) * Math.cos(y * randomParams[1]);
-                    ytemp = Math.cos(Math.exp(x * randomParams[2])) * Math.sin(y * randomParams[3]);
-                    break;
+            Iterator<Map.Entry<TileKey, TileField>> eldest = tiles.entrySet().iterator();
+            while (usedBytes > budgetBytes && eldest.hasNext()) {
+                usedBytes -= eldest.next().getValue().sizeInBytes();
+                eldest.remove();
+            }
+        }
+    }
 
-                case 3: // Periodic hybrid variation
-                    xtemp = Math.sin(x * x - y * y) * Math.cos(x * randomParams[0]);
-                    ytemp = Math.cos(2 * x * y) * Math.sin(y * randomParams[2]);
-                    break;
+    // Escape-time row kernel (iterations is -1 for points that never escape). The SIMD
+    // implementation lives in FractalVectorKernel.java because it needs the
+    // jdk.incubator.vector module; it is loaded reflectively so this file builds without it.
+    interface EscapeKernel {
+        void mandelbrot(double[] cx, double[] cy, int n, int maxIterations, double bailoutSq,
+                double[] iterationsOut, double[] magnitudeSqOut);
+
+        void julia(double[] zx, double[] zy, int n, double cx, double cy, int maxIterations,
+                double bailoutSq, double[] iterationsOut, double[] magnitudeSqOut);
+    }
+
+    private static EscapeKernel loadVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("fractal.simd", "true")))
+            return null;
+        try {
+            return (EscapeKernel) Class.forName("FractalVectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Kernel not compiled or module not added: stay on the scalar kernels
+            return null;
+        }
+    }
+
+    // Immutable snapshot of everything a render needs. It is captured on the EDT
+    // so tile workers never read Swing components or fields that change mid-render.
+    private static final class FractalView {
+        // Largest global pixel index the grid is snapped to; beyond it a long index and
+        // the double products (originX + px) * pixelX stop being exact
+        private static final double MAX_GRID_INDEX = 0x1p52;
+
+        final String fractalType;
+        final int fractalVariant;
+        final double[] randomParams;
+        final int maxIterations;
+        final double centerX;
+        final double centerY;
+        final double zoom;
+        final int width;
+        final int height;
+        final boolean escapeTime;
+        final ReferenceOrbit reference; // Non-null for perturbation (deep zoom) renders
+        final int antialiasSamples; // Sub-samples per edge pixel, 0 for no anti-aliasing
+        final boolean subdivide; // Mariani-Silver subdivision where the kernel allows it
+        // Global pixel index of screen pixel (0, 0). Outside deep zooms the centre is
+        // snapped to the global pixel grid so every view at this zoom samples the same
+        // points, which is what lets tiles be cached across pans. Zooms so deep that the
+        // index would pass MAX_GRID_INDEX fall back to unsnapped, uncached coordinates.
+        final long originX;
+        final long originY;
+        final double pixelX;
+        final double pixelY;
+        final boolean cacheable;
+
+        FractalView(String fractalType, int fractalVariant, double[] randomParams, int maxIterations,
+                double centerX, double centerY, double zoom, int width, int height, boolean escapeTime,
+                ReferenceOrbit reference, int antialiasSamples, boolean subdivide) {
+            this.fractalType = fractalType;
+            this.fractalVariant = fractalVariant;
+            this.randomParams = randomParams.clone();
+            this.maxIterations = maxIterations;
+            this.zoom = zoom;
+            this.width = width;
+            this.height = height;
+            this.escapeTime = escapeTime;
+            this.reference = reference;
+            this.antialiasSamples = antialiasSamples;
+            this.subdivide = subdivide;
+
+            this.pixelX = 1 / (width / 4.0) / zoom;
+            this.pixelY = 1 / (height / 4.0) / zoom;
+            this.cacheable = reference == null
+                    && Math.abs(centerX / pixelX) + width < MAX_GRID_INDEX
+                    && Math.abs(centerY / pixelY) + height < MAX_GRID_INDEX;
+            if (cacheable) {
+                this.originX = Math.round(centerX / pixelX - width / 2.0);
+                this.originY = Math.round(centerY / pixelY - height / 2.0);
+                this.centerX = (originX + width / 2.0) * pixelX;
+                this.centerY = (originY + height / 2.0) * pixelY;
+            } else {
+                this.originX = 0;
+                this.originY = 0;
+                this.centerX = centerX;
+                this.centerY = centerY;
             }
+        }
 
-            x = xtemp;
-            y = ytemp;
+        // Cache key of a tile of this view, or null when the view is not cacheable
+        TileKey cacheKey(Rectangle tile) {
+            if (!cacheable)
+                return null;
+            return new TileKey(this, Math.floorDiv(originX + tile.x, TILE_SIZE),
+                    Math.floorDiv(originY + tile.y, TILE_SIZE));
+        }
 
-            smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y) + 1)) / Math.log(2);
-            iteration++;
+        // Subdivision relies on the escape-time set having no holes, which holds for the
+        // (filled) Mandelbrot and Julia sets but not for the periodic-boundary maps
+        boolean subdivides() {
+            return subdivide && escapeTime
+                    && (fractalType.equals("Mandelbrot Set") || fractalType.equals("Julia Set"));
         }
 
-        return getColor(smooth);
-    }
+        // On the global grid a pixel's coordinates depend only on its global index,
+        // so overlapping views compute bit-identical tiles
+        double toX(double px) {
+            if (cacheable)
+                return (originX + px) * pixelX;
+            return (px - width / 2.0) / (width / 4.0) / zoom + centerX;
+        }
 
-    private int getColor(double iteration) {
-        // Continuous coloring using smooth iteration count
-        double t = iteration / maxIterations;
+        double toY(double py) {
+            if (cacheable)
+                return (originY + py) * pixelY;
+            return (py - height / 2.0) / (height / 4.0) / zoom + centerY;
+        }
 
-        // Enhanced color palette generation
-        float hue, saturation, brightness;
+        // Smooth values of count samples along row py, starting at px and step pixels apart.
+        // Escape-time Mandelbrot/Julia rows go through the SIMD kernel when it is available.
+        void computeRow(int px, int py, int step, int count, float[] out) {
+            if (VECTOR_KERNEL != null && escapeTime && reference == null
+                    && (fractalType.equals("Mandelbrot Set") || fractalType.equals("Julia Set"))) {
+                double[] xs = new double[count];
+                double[] ys = new double[count];
+                double[] iterations = new double[count];
+                double[] magnitudes = new double[count];
+                for (int k = 0; k < count; k++) {
+                    xs[k] = toX(px + k * step);
+                    ys[k] = toY(py);
+                }
 
-        if (fractalTypeCombo.getSelectedItem().equals("Random Fractal")) {
-            // Enhanced random fractal coloring with better color harmony
-            switch (fractalVariant) {
-                case 0: // Warm colors (reds, oranges, yellows)
-                    hue = (float) ((0.95 + 0.15 * Math.sin(t * Math.PI * 2 + randomParams[4])) % 1.0);
-                    saturation = 0.8f + 0.2f * (float) Math.sin(t * Math.PI * 3);
-                    brightness = 0.9f + 0.1f * (float) Math.cos(t * Math.PI * 4);
-                    break;
+                if (fractalType.equals("Julia Set")) {
+                    VECTOR_KERNEL.julia(xs, ys, count, -0.4, 0.6, maxIterations, BAILOUT_SQ, iterations, magnitudes);
+                } else {
+                    VECTOR_KERNEL.mandelbrot(xs, ys, count, maxIterations, BAILOUT_SQ, iterations, magnitudes);
+                }
 
-                case 1: // Cool colors (blues, purples)
-                    hue = (float) ((0.5 + 0.2 * Math.sin(t * Math.PI * 3 + randomParams[4])) % 1.0);
-                    saturation = 0.85f + 0.15f * (float) Math.sin(t * Math.PI * 2);
-                    brightness = 0.85f + 0.15f * (float) Math.cos(t * Math.PI * 3);
-                    break;
+                for (int k = 0; k < count; k++) {
+                    out[k] = iterations[k] < 0 ? (float) INTERIOR
+                            : (float) smoothEscape((int) iterations[k], magnitudes[k]);
+                }
+                return;
+            }
 
-                case 2: // Nature colors (greens, teals)
-                    hue = (float) ((0.25 + 0.15 * Math.sin(t * Math.PI * 2 + randomParams[4])) % 1.0);
-                    saturation = 0.75f + 0.25f * (float) Math.sin(t * Math.PI * 4);
-                    brightness = 0.8f + 0.2f * (float) Math.cos(t * Math.PI * 3);
-                    break;
+            for (int k = 0; k < count; k++) {
+                out[k] = (float) computeSmooth(px + k * step, py);
+            }
+        }
 
-                case 3: // Sunset colors (purples, pinks, oranges)
-                    hue = (float) ((0.75 + 0.25 * Math.sin(t * Math.PI * 3 + randomParams[4])) % 1.0);
-                    saturation = 0.7f + 0.3f * (float) Math.sin(t * Math.PI * 2);
-                    brightness = 0.85f + 0.15f * (float) Math.cos(t * Math.PI * 4);
-                    break;
+        // Sub-samples taken for each anti-aliased edge pixel
+        int samplesPerEdge() {
+            int grid = Math.max(1, (int) Math.round(Math.sqrt(antialiasSamples)));
+            return grid * grid;
+        }
 
-                default: // Fallback to vibrant spectrum
-                    hue = (float) (t * 3 % 1.0);
-                    saturation = 0.8f;
-                    brightness = 0.9f;
+        // Smooth values of jittered samples on a stratified sub-pixel grid, written to
+        // out[offset..offset + samplesPerEdge()). The jitter is hashed from the pixel
+        // position so re-renders are identical.
+        void supersample(int px, int py, float[] out, int offset) {
+            int grid = Math.max(1, (int) Math.round(Math.sqrt(antialiasSamples)));
+            long hash = px * 0x9E3779B97F4A7C15L ^ py * 0xC2B2AE3D27D4EB4FL;
+
+            for (int sy = 0; sy < grid; sy++) {
+                for (int sx = 0; sx < grid; sx++) {
+                    hash = hash * 6364136223846793005L + 1442695040888963407L;
+                    double jx = (hash >>> 11) * 0x1.0p-53;
+                    hash = hash * 6364136223846793005L + 1442695040888963407L;
+                    double jy = (hash >>> 11) * 0x1.0p-53;
+
+                    out[offset++] = (float) computeSmooth(px - 0.5 + (sx + jx) / grid, py - 0.5 + (sy + jy) / grid);
+                }
             }
+        }
 
-            // Apply randomParams[5] for subtle variation while maintaining color harmony
-            hue = (hue + (float) (randomParams[5] * 0.1)) % 1.0f;
+        // Smooth iteration count of a pixel (fractional positions sample between pixel
+        // centres), or INTERIOR for points that never escape
+        double computeSmooth(double px, double py) {
+            if (reference != null) {
+                // Offsets from the reference point stay representable long after
+                // the absolute coordinates have run out of double precision
+                double dcx = (px - width / 2.0) / (width / 4.0) / zoom;
+                double dcy = (py - height / 2.0) / (height / 4.0) / zoom;
+                return perturbMandelbrot(dcx, dcy);
+            }
 
-            // Ensure good contrast
-            brightness = Math.max(0.7f, brightness);
-            saturation = Math.max(0.6f, saturation);
-        } else {
-            // Standard fractal coloring with enhanced contrast
-            double repeats = 3.0; // Number of color cycles
-            hue = (float) (t * repeats % 1.0);
-
-            // Enhance contrast based on iteration count
-            double contrastFactor = Math.sin(t * Math.PI);
-            saturation = 0.9f;
-            brightness = Math.max(0.0f, Math.min(1.0f, (float) (0.7f + 0.3f * contrastFactor)));
-
-            // Adjust colors based on fractal type
-            switch ((String) fractalTypeCombo.getSelectedItem()) {
-                case "Mandelbrot Set":
-                    // Deep blues to purples to golds
-                    hue = (float) ((0.6 + 0.2 * Math.sin(t * Math.PI * 4)) % 1.0);
-                    break;
+            double zx = toX(px);
+            double zy = toY(py);
+
+            if (escapeTime) {
+                switch (fractalType) {
+                    case "Julia Set":
+                        return escapeJuliaSet(zx, zy);
+                    case "Burning Ship":
+                        return escapeBurningShip(zx, zy);
+                    case "Tricorn":
+                        return escapeTricorn(zx, zy);
+                    case "Mandelbrot Set":
+                        return escapeMandelbrot(zx, zy);
+                }
+            }
+
+            switch (fractalType) {
                 case "Julia Set":
-                    // Cyan to magenta to yellow
-                    hue = (float) ((0.3 + 0.3 * Math.sin(t * Math.PI * 3)) % 1.0);
-                    break;
+                    return computeJuliaSet(zx, zy);
                 case "Burning Ship":
-                    // Reds to oranges to yellows
-                    hue = (float) ((0.05 + 0.15 * Math.sin(t * Math.PI * 2)) % 1.0);
-                    saturation = 0.85f + 0.15f * (float) Math.sin(t * Math.PI * 4);
-                    break;
+                    return computeBurningShip(zx, zy);
                 case "Tricorn":
-                    // Blues to greens to teals
-                    hue = (float) ((0.45 + 0.25 * Math.sin(t * Math.PI * 3)) % 1.0);
-                    break;
+                    return computeTricorn(zx, zy);
+                case "Random Fractal":
+                    return computeRandomFractal(zx, zy);
+                default:
+                    return computeMandelbrot(zx, zy);
             }
         }
 
-        // Convert to RGB
-        return Color.HSBtoRGB(hue, saturation, brightness);
-    }
+        // Smooth (continuous) iteration count, evaluated once at the escape iteration
+        private static double smoothEscape(int iteration, double magnitudeSq) {
+            return iteration + 1 - Math.log(0.5 * Math.log(magnitudeSq)) / LOG_2;
+        }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            new FractalGenerator().setVisible(true);
-        });
+        // Escape-time kernels: iteration stops as soon as |z| passes the bailout radius.
+        // Orbits that revisit an earlier point (Brent-style periodicity check against a
+        // snapshot refreshed at doubling intervals) are cycling and therefore interior.
+        private double escapeMandelbrot(double cx, double cy) {
+            // Main cardioid and period-2 bulb are interior, no need to iterate them
+            double qx = cx - 0.25;
+            double q = qx * qx + cy * cy;
+            if (q * (q + qx) <= 0.25 * cy * cy || (cx + 1) * (cx + 1) + cy * cy <= 0.0625)
+                return INTERIOR;
+
+            double x = 0;
+            double y = 0;
+            double checkX = 0;
+            double checkY = 0;
+            int checkInterval = PERIOD_CHECK_START;
+
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double xtemp = x * x - y * y + cx;
+                y = 2 * x * y + cy;
+                x = xtemp;
+
+                double magnitudeSq = x * x + y * y;
+                if (magnitudeSq > BAILOUT_SQ)
+                    return smoothEscape(iteration, magnitudeSq);
+
+                if (Math.abs(x - checkX) < PERIOD_EPSILON && Math.abs(y - checkY) < PERIOD_EPSILON)
+                    return INTERIOR;
+                if (iteration == checkInterval) {
+                    checkX = x;
+                    checkY = y;
+                    checkInterval *= 2;
+                }
+            }
+
+            return INTERIOR;
+        }
+
+        // Perturbation kernel: iterates the pixel's deviation dz from the reference orbit Z,
+        // dz' = 2*Z*dz + dz^2 + dc, entirely in doubles. A glitch (the full orbit Z + dz
+        // getting smaller than dz, where the deviation loses precision) or running off
+        // the end of the reference is handled by rebasing: dz becomes the full value and
+        // the pixel restarts from the beginning of the reference orbit.
+        private double perturbMandelbrot(double dcx, double dcy) {
+            double[] refX = reference.x;
+            double[] refY = reference.y;
+            int refLast = reference.length - 1;
+            double dx = 0;
+            double dy = 0;
+            int m = 0;
+
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double zrx = refX[m];
+                double zry = refY[m];
+                double ndx = 2 * (zrx * dx - zry * dy) + dx * dx - dy * dy + dcx;
+                double ndy = 2 * (zrx * dy + zry * dx) + 2 * dx * dy + dcy;
+                dx = ndx;
+                dy = ndy;
+                m++;
+
+                double zx = refX[m] + dx;
+                double zy = refY[m] + dy;
+                double magnitudeSq = zx * zx + zy * zy;
+                if (magnitudeSq > BAILOUT_SQ)
+                    return smoothEscape(iteration, magnitudeSq);
+
+                if (magnitudeSq < dx * dx + dy * dy || m == refLast) {
+                    dx = zx;
+                    dy = zy;
+                    m = 0;
+                }
+            }
+
+            return INTERIOR;
+        }
+
+        private double escapeJuliaSet(double x, double y) {
+            double cx = -0.4;
+            double cy = 0.6;
+            double checkX = x;
+            double checkY = y;
+            int checkInterval = PERIOD_CHECK_START;
+
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double xtemp = x * x - y * y + cx;
+                y = 2 * x * y + cy;
+                x = xtemp;
+
+                double magnitudeSq = x * x + y * y;
+                if (magnitudeSq > BAILOUT_SQ)
+                    return smoothEscape(iteration, magnitudeSq);
+
+                if (Math.abs(x - checkX) < PERIOD_EPSILON && Math.abs(y - checkY) < PERIOD_EPSILON)
+                    return INTERIOR;
+                if (iteration == checkInterval) {
+                    checkX = x;
+                    checkY = y;
+                    checkInterval *= 2;
+                }
+            }
+
+            return INTERIOR;
+        }
+
+        private double escapeBurningShip(double cx, double cy) {
+            double x = 0;
+            double y = 0;
+            double checkX = 0;
+            double checkY = 0;
+            int checkInterval = PERIOD_CHECK_START;
+
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double xtemp = x * x - y * y + cx;
+                y = Math.abs(2 * x * y) + cy;
+                x = xtemp;
+
+                double magnitudeSq = x * x + y * y;
+                if (magnitudeSq > BAILOUT_SQ)
+                    return smoothEscape(iteration, magnitudeSq);
+
+                if (Math.abs(x - checkX) < PERIOD_EPSILON && Math.abs(y - checkY) < PERIOD_EPSILON)
+                    return INTERIOR;
+                if (iteration == checkInterval) {
+                    checkX = x;
+                    checkY = y;
+                    checkInterval *= 2;
+                }
+            }
+
+            return INTERIOR;
+        }
+
+        private double escapeTricorn(double cx, double cy) {
+            double x = 0;
+            double y = 0;
+            double checkX = 0;
+            double checkY = 0;
+            int checkInterval = PERIOD_CHECK_START;
+
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double xtemp = x * x - y * y + cx;
+                y = -2 * x * y + cy;
+                x = xtemp;
+
+                double magnitudeSq = x * x + y * y;
+                if (magnitudeSq > BAILOUT_SQ)
+                    return smoothEscape(iteration, magnitudeSq);
+
+                if (Math.abs(x - checkX) < PERIOD_EPSILON && Math.abs(y - checkY) < PERIOD_EPSILON)
+                    return INTERIOR;
+                if (iteration == checkInterval) {
+                    checkX = x;
+                    checkY = y;
+                    checkInterval *= 2;
+                }
+            }
+
+            return INTERIOR;
+        }
+
+        private double computeMandelbrot(double zx, double zy) {
+            double x = 0;
+            double y = 0;
+            int iteration = 0;
+            double smooth = 0;
+
+            while (iteration < maxIterations) {
+                double xtemp = x * x - y * y + zx;
+                y = 2 * x * y + zy;
+                x = xtemp;
+
+                // Smooth iteration count for continuous coloring
+                smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+
+                // Use periodic boundary instead of escape condition
+                if (x * x + y * y > 4) {
+                    x = Math.sin(x);
+                    y = Math.sin(y);
+                }
+
+                iteration++;
+            }
+
+            return smooth;
+        }
+
+        private double computeJuliaSet(double zx, double zy) {
+            double cx = -0.4;
+            double cy = 0.6;
+            int iteration = 0;
+            double smooth = 0;
+
+            while (iteration < maxIterations) {
+                double xtemp = zx * zx - zy * zy + cx;
+                zy = 2 * zx * zy + cy;
+                zx = xtemp;
+
+                smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(zx * zx + zy * zy))) / Math.log(2);
+
+                // Periodic wrapping
+                if (zx * zx + zy * zy > 4) {
+                    zx = Math.tan(zx) / 2;
+                    zy = Math.tan(zy) / 2;
+                }
+
+                iteration++;
+            }
+
+            return smooth;
+        }
+
+        private double computeBurningShip(double zx, double zy) {
+            double x = 0;
+            double y = 0;
+            int iteration = 0;
+            double smooth = 0;
+
+            while (iteration < maxIterations) {
+                double xtemp = x * x - y * y + zx;
+                y = Math.abs(2 * x * y) + zy;
+                x = xtemp;
+
+                smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+
+                // Periodic transformation
+                if (x * x + y * y > 4) {
+                    x = Math.cos(x);
+                    y = Math.sin(y);
+                }
+
+                iteration++;
+            }
+
+            return smooth;
+        }
+
+        private double computeTricorn(double zx, double zy) {
+            double x = 0;
+            double y = 0;
+            int iteration = 0;
+            double smooth = 0;
+
+            while (iteration < maxIterations) {
+                double xtemp = x * x - y * y + zx;
+                y = -2 * x * y + zy;
+                x = xtemp;
+
+                smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y))) / Math.log(2);
+
+                // Periodic boundary
+                if (x * x + y * y > 4) {
+                    x = Math.sin(x * Math.PI) / 2;
+                    y = Math.cos(y * Math.PI) / 2;
+                }
+
+                iteration++;
+            }
+
+            return smooth;
+        }
+
+        private double computeRandomFractal(double zx, double zy) {
+            double x = zx;
+            double y = zy;
+            int iteration = 0;
+            double smooth = 0;
+
+            while (iteration < maxIterations) {
+                double xtemp = 0;
+                double ytemp = 0;
+
+                switch (fractalVariant) {
+                    case 0: // Periodic polynomial variation
+                        xtemp = Math.sin(x * x * x - 3 * x * y * y + randomParams[0] * x);
+                        ytemp = Math.cos(3 * x * x * y - y * y * y + randomParams[2] * y);
+                        break;
+
+                    case 1: // Periodic trigonometric variation
+                        xtemp = Math.sin(x * randomParams[0]) * Math.tanh(y * randomParams[1]);
+                        ytemp = Math.cos(x * randomParams[2]) * Math.tanh(y * randomParams[3]);
+                        break;
+
+                    case 2: // Periodic exponential variation
+                        xtemp = Math.sin(Math.exp(x * randomParams[0])) * Math.cos(y * randomParams[1]);
+                        ytemp = Math.cos(Math.exp(x * randomParams[2])) * Math.sin(y * randomParams[3]);
+                        break;
+
+                    case 3: // Periodic hybrid variation
+                        xtemp = Math.sin(x * x - y * y) * Math.cos(x * randomParams[0]);
+                        ytemp = Math.cos(2 * x * y) * Math.sin(y * randomParams[2]);
+                        break;
+                }
+
+                x = xtemp;
+                y = ytemp;
+
+                smooth = iteration + 1 - Math.log(Math.log(Math.sqrt(x * x + y * y) + 1)) / Math.log(2);
+                iteration++;
+            }
+
+            return smooth;
+        }
+
+    }
+
+    // Mandelbrot orbit of the view centre computed in BigDecimal and rounded to doubles
+    // (the orbit values themselves are O(1), only the starting point needs the precision)
+    private static final class ReferenceOrbit {
+        final double[] x;
+        final double[] y;
+        final int length;
+
+        ReferenceOrbit(BigDecimal cx, BigDecimal cy, int maxIterations, MathContext mc) {
+            x = new double[maxIterations + 2];
+            y = new double[maxIterations + 2];
+            BigDecimal zx = BigDecimal.ZERO;
+            BigDecimal zy = BigDecimal.ZERO;
+            BigDecimal two = BigDecimal.valueOf(2);
+            int n = 1; // x[0], y[0] hold Z0 = 0
+
+            while (n < x.length) {
+                BigDecimal xtemp = zx.multiply(zx, mc).subtract(zy.multiply(zy, mc), mc).add(cx, mc);
+                zy = two.multiply(zx, mc).multiply(zy, mc).add(cy, mc);
+                zx = xtemp;
+                x[n] = zx.doubleValue();
+                y[n] = zy.doubleValue();
+                n++;
+
+                // Keep the escaping value so pixels can still step onto it, then stop
+                if (x[n - 1] * x[n - 1] + y[n - 1] * y[n - 1] > BAILOUT_SQ)
+                    break;
+            }
+            length = n;
+        }
+    }
+
+    // Colour ramp of one fractal type/variant baked into a lookup table. Every ramp
+    // repeats with period PERIOD in t, so one table covers any smooth iteration value
+    // and colouring a pixel is an interpolated table read.
+    private static final class Palette {
+        private static final int SIZE = 4096;
+        private static final double PERIOD = 2.0;
+
+        final String fractalType;
+        final int fractalVariant;
+        final double[] randomParams;
+        final int maxIterations;
+        private final int[] lut = new int[SIZE + 1]; // Last entry repeats the first for interpolation
+        private final double scale; // Table entries per smooth iteration
+
+        Palette(String fractalType, int fractalVariant, double[] randomParams, int maxIterations) {
+            this.fractalType = fractalType;
+            this.fractalVariant = fractalVariant;
+            this.randomParams = randomParams.clone();
+            this.maxIterations = maxIterations;
+            this.scale = SIZE / (PERIOD * maxIterations);
+
+            for (int i = 0; i < SIZE; i++) {
+                lut[i] = rampColor(fractalType, fractalVariant, this.randomParams, i * PERIOD / SIZE);
+            }
+            lut[SIZE] = lut[0];
+        }
+
+        boolean matches(String fractalType, int fractalVariant, double[] randomParams, int maxIterations) {
+            return this.fractalType.equals(fractalType)
+                    && this.fractalVariant == fractalVariant
+                    && this.maxIterations == maxIterations
+                    && Arrays.equals(this.randomParams, randomParams);
+        }
+
+        int color(double smooth) {
+            double position = smooth * scale;
+            if (Double.isNaN(position) || Double.isInfinite(position))
+                return lut[0];
+
+            position -= Math.floor(position / SIZE) * SIZE;
+            int index = Math.min((int) position, SIZE - 1);
+            int frac = (int) ((position - index) * 256);
+            int c0 = lut[index];
+            int c1 = lut[index + 1];
+
+            // Per-channel linear interpolation in fixed point
+            int r = ((c0 >> 16) & 0xFF) + ((((c1 >> 16) & 0xFF) - ((c0 >> 16) & 0xFF)) * frac >> 8);
+            int g = ((c0 >> 8) & 0xFF) + ((((c1 >> 8) & 0xFF) - ((c0 >> 8) & 0xFF)) * frac >> 8);
+            int b = (c0 & 0xFF) + (((c1 & 0xFF) - (c0 & 0xFF)) * frac >> 8);
+            return 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+
+        // Colour of the ramp at t = smooth / maxIterations
+        private static int rampColor(String fractalType, int fractalVariant, double[] randomParams, double t) {
+            // Enhanced color palette generation
+            float hue, saturation, brightness;
+
+            if (fractalType.equals("Random Fractal")) {
+                // Enhanced random fractal coloring with better color harmony
+                switch (fractalVariant) {
+                    case 0: // Warm colors (reds, oranges, yellows)
+                        hue = (float) ((0.95 + 0.15 * Math.sin(t * Math.PI * 2 + randomParams[4])) % 1.0);
+                        saturation = 0.8f + 0.2f * (float) Math.sin(t * Math.PI * 3);
+                        brightness = 0.9f + 0.1f * (float) Math.cos(t * Math.PI * 4);
+                        break;
+
+                    case 1: // Cool colors (blues, purples)
+                        hue = (float) ((0.5 + 0.2 * Math.sin(t * Math.PI * 3 + randomParams[4])) % 1.0);
+                        saturation = 0.85f + 0.15f * (float) Math.sin(t * Math.PI * 2);
+                        brightness = 0.85f + 0.15f * (float) Math.cos(t * Math.PI * 3);
+                        break;
+
+                    case 2: // Nature colors (greens, teals)
+                        hue = (float) ((0.25 + 0.15 * Math.sin(t * Math.PI * 2 + randomParams[4])) % 1.0);
+                        saturation = 0.75f + 0.25f * (float) Math.sin(t * Math.PI * 4);
+                        brightness = 0.8f + 0.2f * (float) Math.cos(t * Math.PI * 3);
+                        break;
+
+                    case 3: // Sunset colors (purples, pinks, oranges)
+                        hue = (float) ((0.75 + 0.25 * Math.sin(t * Math.PI * 3 + randomParams[4])) % 1.0);
+                        saturation = 0.7f + 0.3f * (float) Math.sin(t * Math.PI * 2);
+                        brightness = 0.85f + 0.15f * (float) Math.cos(t * Math.PI * 4);
+                        break;
+
+                    default: // Fallback to vibrant spectrum
+                        hue = (float) (t * 3 % 1.0);
+                        saturation = 0.8f;
+                        brightness = 0.9f;
+                }
+
+                // Apply randomParams[5] for subtle variation while maintaining color harmony
+                hue = (hue + (float) (randomParams[5] * 0.1)) % 1.0f;
+
+                // Ensure good contrast
+                brightness = Math.max(0.7f, brightness);
+                saturation = Math.max(0.6f, saturation);
+            } else {
+                // Standard fractal coloring with enhanced contrast
+                double repeats = 3.0; // Number of color cycles
+                hue = (float) (t * repeats % 1.0);
+
+                // Enhance contrast based on iteration count
+                double contrastFactor = Math.sin(t * Math.PI);
+                saturation = 0.9f;
+                brightness = Math.max(0.0f, Math.min(1.0f, (float) (0.7f + 0.3f * contrastFactor)));
+
+                // Adjust colors based on fractal type
+                switch (fractalType) {
+                    case "Mandelbrot Set":
+                        // Deep blues to purples to golds
+                        hue = (float) ((0.6 + 0.2 * Math.sin(t * Math.PI * 4)) % 1.0);
+                        break;
+                    case "Julia Set":
+                        // Cyan to magenta to yellow
+                        hue = (float) ((0.3 + 0.3 * Math.sin(t * Math.PI * 3)) % 1.0);
+                        break;
+                    case "Burning Ship":
+                        // Reds to oranges to yellows
+                        hue = (float) ((0.05 + 0.15 * Math.sin(t * Math.PI * 2)) % 1.0);
+                        saturation = 0.85f + 0.15f * (float) Math.sin(t * Math.PI * 4);
+                        break;
+                    case "Tricorn":
+                        // Blues to greens to teals
+                        hue = (float) ((0.45 + 0.25 * Math.sin(t * Math.PI * 3)) % 1.0);
+                        break;
+                }
+            }
+
+            // Convert to RGB
+            return Color.HSBtoRGB(hue, saturation, brightness);
+        }
+    }
+
+    // Palette for the named ramp ("Default" follows the fractal type and variant).
+    // Returns previous when it already holds that table.
+    private static Palette paletteFor(String name, String fractalType, int fractalVariant, double[] randomParams,
+            int maxIterations, Palette previous) {
+        int index = Arrays.asList(PALETTES).indexOf(name);
+        if (index < 0)
+            throw new IllegalArgumentException("Unknown palette: " + name);
+        if (index > 0) {
+            // The named ramps are the per-type ones followed by the four Random Fractal ones
+            boolean random = index >= FRACTAL_TYPES.length;
+            fractalType = random ? "Random Fractal" : FRACTAL_TYPES[index - 1];
+            fractalVariant = random ? index - FRACTAL_TYPES.length : 0;
+        }
+
+        if (previous != null && previous.matches(fractalType, fractalVariant, randomParams, maxIterations))
+            return previous;
+        return new Palette(fractalType, fractalVariant, randomParams, maxIterations);
+    }
+
+    // Maps smooth iteration values to colours: a palette, a colour-cycling offset and
+    // optionally histogram equalisation. Recolouring a stored field is one pass of this,
+    // with no iteration at all.
+    private static final class Coloring {
+        final Palette palette;
+        final double offset; // In smooth iterations; advancing it cycles the colours
+        final Equalizer equalizer; // Null for plain smooth colouring
+
+        Coloring(Palette palette, double offset, Equalizer equalizer) {
+            this.palette = palette;
+            this.offset = offset;
+            this.equalizer = equalizer;
+        }
+
+        int color(double smooth) {
+            if (smooth == INTERIOR)
+                return INTERIOR_COLOR;
+            if (equalizer != null) {
+                // Spread the equalised [0, 1] over the same span as the raw values
+                smooth = equalizer.apply(smooth) * palette.maxIterations;
+            }
+            return palette.color(smooth + offset);
+        }
+
+        // Average colour of count sub-samples starting at samples[offset]
+        int average(float[] samples, int offset, int count) {
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            for (int k = offset; k < offset + count; k++) {
+                int color = color(samples[k]);
+                r += (color >> 16) & 0xFF;
+                g += (color >> 8) & 0xFF;
+                b += color & 0xFF;
+            }
+            return 0xFF000000 | (r / count << 16) | (g / count << 8) | (b / count);
+        }
+
+        // Colours the on-screen part of a tile into a packed RGB raster of the given size
+        void shade(TileField field, Rectangle tile, int[] target, int width, int height) {
+            int left = Math.max(tile.x, 0);
+            int right = Math.min(tile.x + tile.width, width);
+            int top = Math.max(tile.y, 0);
+            int bottom = Math.min(tile.y + tile.height, height);
+            for (int y = top; y < bottom; y++) {
+                int source = (y - tile.y) * tile.width - tile.x;
+                for (int x = left; x < right; x++) {
+                    target[y * width + x] = color(field.smooth[source + x]);
+                }
+            }
+
+            int[] edges = field.edges;
+            for (int k = 0; k < edges.length; k++) {
+                int x = tile.x + edges[k] % tile.width;
+                int y = tile.y + edges[k] / tile.width;
+                if (x >= left && x < right && y >= top && y < bottom) {
+                    target[y * width + x] = average(field.edgeSamples, k * field.samplesPerEdge, field.samplesPerEdge);
+                }
+            }
+        }
+    }
+
+    // Anything that can list the smooth values of a frame, possibly more than once
+    private interface ValueSource {
+        void forEach(DoubleConsumer action) throws IOException;
+    }
+
+    // Histogram equalisation: maps a smooth value to the fraction of the frame's escaping
+    // pixels below it, so every part of the palette covers a similar area however the
+    // iteration counts are distributed
+    private static final class Equalizer {
+        private static final int BINS = 4096;
+
+        private final double min;
+        private final double binWidth;
+        private final float[] cdf = new float[BINS + 1]; // cdf[i]: fraction below bin i
+
+        private Equalizer(double min, double binWidth, long[] counts, long total) {
+            this.min = min;
+            this.binWidth = binWidth;
+            long below = 0;
+            for (int i = 0; i < BINS; i++) {
+                cdf[i] = (float) ((double) below / total);
+                below += counts[i];
+            }
+            cdf[BINS] = 1;
+        }
+
+        // Two passes over the values: their range, then the histogram. Returns null when
+        // nothing escapes or every value is the same.
+        static Equalizer of(ValueSource values) throws IOException {
+            double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+            values.forEach(v -> {
+                if (Double.isFinite(v)) {
+                    range[0] = Math.min(range[0], v);
+                    range[1] = Math.max(range[1], v);
+                }
+            });
+            if (!(range[1] > range[0]))
+                return null;
+
+            double min = range[0];
+            double binWidth = (range[1] - min) / BINS;
+            long[] counts = new long[BINS];
+            long[] total = new long[1];
+            values.forEach(v -> {
+                if (Double.isFinite(v)) {
+                    counts[Math.min((int) ((v - min) / binWidth), BINS - 1)]++;
+                    total[0]++;
+                }
+            });
+            return new Equalizer(min, binWidth, counts, total[0]);
+        }
+
+        // Interpolates within the bin so equalised colouring stays smooth
+        double apply(double smooth) {
+            double position = (smooth - min) / binWidth;
+            if (!(position > 0))
+                return 0;
+            if (position >= BINS)
+                return 1;
+            int bin = (int) position;
+            return cdf[bin] + (cdf[bin + 1] - cdf[bin]) * (position - bin);
+        }
+    }
+
+    // Destination for rendered rows of packed RGB pixels
+    private interface RowSink extends Closeable {
+        void writeRow(int[] pixels, int offset) throws IOException;
+    }
+
+    // Streaming PNG encoder (8-bit RGB, Sub filter). Rows are deflated into IDAT chunks
+    // as they arrive, so the full image never has to exist in memory.
+    private static final class PngRowSink implements RowSink {
+        private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final DataOutputStream out;
+        private final DeflaterOutputStream idat;
+        private final int width;
+        private final byte[] row;
+
+        PngRowSink(OutputStream target, int width, int height) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(target, CHUNK_SIZE));
+            this.width = width;
+            this.row = new byte[1 + width * 3];
+
+            out.write(SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream h = new DataOutputStream(header);
+            h.writeInt(width);
+            h.writeInt(height);
+            h.writeByte(8); // Bit depth
+            h.writeByte(2); // Colour type: truecolour
+            h.writeByte(0); // Compression
+            h.writeByte(0); // Filter method
+            h.writeByte(0); // No interlace
+            writeChunk("IHDR", header.toByteArray(), header.size());
+
+            // Buffers compressed bytes and emits them as IDAT chunks
+            OutputStream chunker = new OutputStream() {
+                private final byte[] buffer = new byte[CHUNK_SIZE];
+                private int count;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        int n = Math.min(len, buffer.length - count);
+                        System.arraycopy(b, off, buffer, count, n);
+                        count += n;
+                        off += n;
+                        len -= n;
+                        if (count == buffer.length) {
+                            flush();
+                        }
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    if (count > 0) {
+                        writeChunk("IDAT", buffer, count);
+                        count = 0;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            this.idat = new DeflaterOutputStream(chunker, new Deflater(Deflater.BEST_SPEED), CHUNK_SIZE);
+        }
+
+        private void writeChunk(String type, byte[] data, int length) throws IOException {
+            CRC32 crc = new CRC32();
+            byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            crc.update(typeBytes);
+            crc.update(data, 0, length);
+            out.writeInt(length);
+            out.write(typeBytes);
+            out.write(data, 0, length);
+            out.writeInt((int) crc.getValue());
+        }
+
+        @Override
+        public void writeRow(int[] pixels, int offset) throws IOException {
+            row[0] = 1; // Sub filter: each byte minus the same channel of the previous pixel
+            int previous = 0;
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[offset + x];
+                int i = 1 + x * 3;
+                row[i] = (byte) ((rgb >> 16) - (previous >> 16));
+                row[i + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+                row[i + 2] = (byte) (rgb - previous);
+                previous = rgb;
+            }
+            idat.write(row);
+        }
+
+        @Override
+        public void close() throws IOException {
+            idat.close();
+            writeChunk("IEND", new byte[0], 0);
+            out.close();
+        }
+    }
+
+    // Binary PPM (P6): a header followed by raw RGB bytes
+    private static final class PpmRowSink implements RowSink {
+        private final OutputStream out;
+        private final byte[] row;
+
+        PpmRowSink(OutputStream target, int width, int height) throws IOException {
+            this.out = new BufferedOutputStream(target, 1 << 16);
+            this.row = new byte[width * 3];
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void writeRow(int[] pixels, int offset) throws IOException {
+            for (int x = 0, i = 0; x < row.length / 3; x++) {
+                int rgb = pixels[offset + x];
+                row[i++] = (byte) (rgb >> 16);
+                row[i++] = (byte) (rgb >> 8);
+                row[i++] = (byte) rgb;
+            }
+            out.write(row);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Smooth iteration values of a whole render on disk (`--field`), so it can be
+    // recoloured later without iterating (`--recolor`). The value grid is memory-mapped
+    // a band at a time, so fields far larger than the heap (or 2 GB) are fine. Edge
+    // pixels of anti-aliased renders follow the grid as (index, sub-samples) records
+    // in pixel order.
+    private static final class FieldFile implements Closeable {
+        private static final int MAGIC = 0x46524644; // "FRFD"
+        private static final int HEADER_SIZE = 128;
+
+        final int width;
+        final int height;
+        final String fractalType;
+        final int fractalVariant;
+        final double[] randomParams;
+        final int maxIterations;
+        final int samplesPerEdge;
+        private long edgeCount;
+        private final FileChannel channel;
+        private final long gridEnd;
+        private DataOutputStream edgeOut;
+
+        private FieldFile(FileChannel channel, int width, int height, String fractalType, int fractalVariant,
+                double[] randomParams, int maxIterations, int samplesPerEdge, long edgeCount) {
+            this.channel = channel;
+            this.width = width;
+            this.height = height;
+            this.fractalType = fractalType;
+            this.fractalVariant = fractalVariant;
+            this.randomParams = randomParams;
+            this.maxIterations = maxIterations;
+            this.samplesPerEdge = samplesPerEdge;
+            this.edgeCount = edgeCount;
+            this.gridEnd = HEADER_SIZE + 4L * width * height;
+        }
+
+        // New field for a render of view; bands are then written in order with writeBand
+        static FieldFile create(Path path, FractalView view) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FieldFile field = new FieldFile(channel, view.width, view.height, view.fractalType, view.fractalVariant,
+                    view.randomParams, view.maxIterations, view.antialiasSamples > 0 ? view.samplesPerEdge() : 0, 0);
+            channel.position(field.gridEnd);
+            field.edgeOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            return field;
+        }
+
+        static FieldFile open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                channel.close();
+                throw new IllegalArgumentException("Not a fractal field file: " + path);
+            }
+
+            int width = header.getInt();
+            int height = header.getInt();
+            int maxIterations = header.getInt();
+            String fractalType = FRACTAL_TYPES[header.getInt()];
+            int fractalVariant = header.getInt();
+            int samplesPerEdge = header.getInt();
+            long edgeCount = header.getLong();
+            double[] randomParams = new double[6];
+            for (int i = 0; i < randomParams.length; i++) {
+                randomParams[i] = header.getDouble();
+            }
+            return new FieldFile(channel, width, height, fractalType, fractalVariant, randomParams, maxIterations,
+                    samplesPerEdge, edgeCount);
+        }
+
+        // Stores the fields of one band of tiles whose top row is top
+        void writeBand(int top, int bandHeight, List<Rectangle> tiles, List<TileField> fields) throws IOException {
+            FloatBuffer grid = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + 4L * top * width,
+                    4L * bandHeight * width).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            List<long[]> edges = new ArrayList<>(); // { global index, tile, edge }
+            for (int t = 0; t < tiles.size(); t++) {
+                Rectangle tile = tiles.get(t);
+                TileField field = fields.get(t);
+                for (int y = 0; y < bandHeight; y++) {
+                    grid.position((y * width) + tile.x);
+                    grid.put(field.smooth, y * tile.width, tile.width);
+                }
+                for (int k = 0; k < field.edges.length; k++) {
+                    int e = field.edges[k];
+                    edges.add(new long[] { (long) (top + e / tile.width) * width + tile.x + e % tile.width, t, k });
+                }
+            }
+
+            edges.sort(Comparator.comparingLong(e -> e[0]));
+            for (long[] e : edges) {
+                TileField field = fields.get((int) e[1]);
+                edgeOut.writeLong(e[0]);
+                for (int k = 0; k < samplesPerEdge; k++) {
+                    edgeOut.writeFloat(field.edgeSamples[(int) e[2] * samplesPerEdge + k]);
+                }
+            }
+            edgeCount += edges.size();
+        }
+
+        // Reads rows [top, top + rows) of the value grid into out
+        void readRows(int top, int rows, float[] out) throws IOException {
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 4L * top * width, 4L * rows * width)
+                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(out, 0, rows * width);
+        }
+
+        void forEachValue(DoubleConsumer action) throws IOException {
+            float[] band = new float[width * TILE_SIZE];
+            for (int top = 0; top < height; top += TILE_SIZE) {
+                int rows = Math.min(TILE_SIZE, height - top);
+                readRows(top, rows, band);
+                for (int i = 0; i < rows * width; i++) {
+                    action.accept(band[i]);
+                }
+            }
+        }
+
+        // Colours the whole field into sink, edge pixels averaging their sub-samples
+        void recolor(Coloring coloring, RowSink sink) throws IOException {
+            DataInputStream edgeIn = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel.position(gridEnd)), 1 << 16));
+            float[] samples = new float[samplesPerEdge];
+            long edgesLeft = edgeCount;
+            long nextEdge = edgesLeft > 0 ? edgeIn.readLong() : -1;
+
+            float[] band = new float[width * TILE_SIZE];
+            int[] row = new int[width];
+            for (int top = 0; top < height; top += TILE_SIZE) {
+                int rows = Math.min(TILE_SIZE, height - top);
+                readRows(top, rows, band);
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < width; x++) {
+                        row[x] = coloring.color(band[y * width + x]);
+                    }
+
+                    long rowEnd = (long) (top + y + 1) * width;
+                    while (nextEdge >= 0 && nextEdge < rowEnd) {
+                        for (int k = 0; k < samplesPerEdge; k++) {
+                            samples[k] = edgeIn.readFloat();
+                        }
+                        row[(int) (nextEdge % width)] = coloring.average(samples, 0, samplesPerEdge);
+                        nextEdge = --edgesLeft > 0 ? edgeIn.readLong() : -1;
+                    }
+                    sink.writeRow(row, 0);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (edgeOut != null) {
+                    edgeOut.flush();
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                    header.putInt(MAGIC).putInt(width).putInt(height).putInt(maxIterations)
+                            .putInt(Arrays.asList(FRACTAL_TYPES).indexOf(fractalType)).putInt(fractalVariant)
+                            .putInt(samplesPerEdge).putLong(edgeCount);
+                    for (double param : randomParams) {
+                        header.putDouble(param);
+                    }
+                    header.rewind();
+                    // Written last, so a render that failed part way is never mistaken for a field
+                    channel.write(header, 0);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Headless renderer: `java FractalGenerator --batch --output poster.png [options]`.
+    // The image is produced in bands of TILE_SIZE rows; the tiles of the next band are
+    // computed on all cores while the current band is encoded, so memory stays at
+    // about two bands whatever the output size.
+    private static final class BatchRenderer {
+        private static final String USAGE = String.join("\n",
+                "Usage: java FractalGenerator --batch --output FILE [options]",
+                "  --type NAME         Mandelbrot Set | Julia Set | Burning Ship | Tricorn | Random Fractal",
+                "  --mode MODE         periodic | escape (default periodic)",
+                "  --center-x X        View centre, any precision (default 0)",
+                "  --center-y Y",
+                "  --zoom Z            Magnification (default 1)",
+                "  --iterations N      Maximum iterations (default 100)",
+                "  --size WxH          Output size in pixels (default 800x600)",
+                "  --seed S            Seed for the Random Fractal parameters and variant",
+                "  --variant V         Random Fractal variant 1-4 (overrides the seeded one)",
+                "  --aa N              Adaptive anti-aliasing with N sub-samples per edge pixel (default off)",
+                "  --subdivide BOOL    Mariani-Silver subdivision for escape-time Mandelbrot/Julia (default false)",
+                "  --palette NAME      " + String.join(" | ", PALETTES) + " (default Default)",
+                "  --coloring MODE     smooth | equalized (histogram equalisation; default smooth)",
+                "  --format FORMAT     png | ppm (default from the file extension)",
+                "  --field FILE        Also keep the smooth iteration values in FILE (memory-mapped);",
+                "                      --output may then be omitted",
+                "  --listen PORT       Farm the tiles out to worker processes connecting to PORT",
+                "                      (java FractalGenerator --worker HOST:PORT on each machine)",
+                "  --local-workers N   Start N worker processes on this machine (implies --listen 0)",
+                "  --tile-timeout S    Seconds without a result before a worker's tiles are reassigned",
+                "                      (default 120)",
+                "",
+                "Usage: java FractalGenerator --batch --recolor FIELD --output FILE [--palette NAME]",
+                "       [--coloring MODE] [--format FORMAT]",
+                "  Recolours a saved field without iterating again");
+
+        static void run(String[] args) throws Exception {
+            Map<String, String> options = parseOptions(args);
+            String output = options.get("output");
+            String fieldPath = options.get("field");
+
+            if (options.containsKey("recolor")) {
+                if (output == null)
+                    throw new IllegalArgumentException("--output is required");
+                recolor(Paths.get(options.get("recolor")), options, output);
+                return;
+            }
+            if (output == null && fieldPath == null)
+                throw new IllegalArgumentException("--output is required");
+
+            boolean distributed = options.containsKey("listen") || options.containsKey("local-workers");
+            if (distributed) {
+                // Workers rebuild the view from these options, so they must agree on the random parameters
+                options.putIfAbsent("seed", Long.toString(new Random().nextLong()));
+            }
+            FractalView view = createView(options);
+            Coloring coloring = createColoring(options, view.fractalType, view.fractalVariant, view.randomParams,
+                    view.maxIterations, null);
+
+            ExecutorService pool = Executors.newWorkStealingPool();
+            try (TileCoordinator coordinator = distributed ? TileCoordinator.start(options) : null) {
+                // Remote tiles take longer to arrive, so keep more bands in flight
+                TileSource tiles = coordinator != null ? coordinator
+                        : tile -> pool.submit(() -> renderTile(view, tile));
+                int lookahead = coordinator != null ? 4 : 1;
+
+                if (fieldPath == null && !isEqualized(options)) {
+                    // Plain colouring needs no second look at the values: colour as tiles arrive
+                    try (RowSink sink = openSink(options, output, view.width, view.height)) {
+                        render(view, tiles, lookahead, coloring, sink, null);
+                    }
+                    return;
+                }
+
+                // Equalisation needs every value before the first row can be coloured, so
+                // render to a field (a temporary one unless --field was given) and recolour it
+                Path path = fieldPath != null ? Paths.get(fieldPath) : Files.createTempFile("fractal", ".field");
+                try {
+                    try (FieldFile field = FieldFile.create(path, view)) {
+                        render(view, tiles, lookahead, null, null, field);
+                    }
+                    if (output != null) {
+                        recolor(path, options, output);
+                    }
+                } finally {
+                    if (fieldPath == null) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private static void recolor(Path path, Map<String, String> options, String output) throws IOException {
+            try (FieldFile field = FieldFile.open(path);
+                    RowSink sink = openSink(options, output, field.width, field.height)) {
+                Coloring coloring = createColoring(options, field.fractalType, field.fractalVariant,
+                        field.randomParams, field.maxIterations, field::forEachValue);
+                field.recolor(coloring, sink);
+            }
+        }
+
+        static boolean isEqualized(Map<String, String> options) {
+            String mode = options.getOrDefault("coloring", "smooth");
+            if (!mode.equals("smooth") && !mode.equals("equalized"))
+                throw new IllegalArgumentException("Unknown coloring: " + mode);
+            return mode.equals("equalized");
+        }
+
+        // Colouring from the --palette and --coloring options. values is scanned for the
+        // equalisation histogram and may be null when equalisation is off.
+        static Coloring createColoring(Map<String, String> options, String fractalType, int fractalVariant,
+                double[] randomParams, int maxIterations, ValueSource values) throws IOException {
+            Palette palette = paletteFor(options.getOrDefault("palette", PALETTES[0]), fractalType, fractalVariant,
+                    randomParams, maxIterations, null);
+            return new Coloring(palette, 0, isEqualized(options) && values != null ? Equalizer.of(values) : null);
+        }
+
+        // Builds the view described by the common options
+        static FractalView createView(Map<String, String> options) {
+            double zoom = Double.parseDouble(options.getOrDefault("zoom", "1"));
+            BigDecimal centerX = new BigDecimal(options.getOrDefault("center-x", "0"));
+            BigDecimal centerY = new BigDecimal(options.getOrDefault("center-y", "0"));
+            return createView(options, centerX, centerY, zoom);
+        }
+
+        // Builds the view described by the common options at the given centre and zoom
+        static FractalView createView(Map<String, String> options, BigDecimal centerX, BigDecimal centerY,
+                double zoom) {
+            String fractalType = options.getOrDefault("type", FRACTAL_TYPES[0]);
+            if (!Arrays.asList(FRACTAL_TYPES).contains(fractalType))
+                throw new IllegalArgumentException("Unknown fractal type: " + fractalType);
+
+            String[] size = options.getOrDefault("size", DEFAULT_WIDTH + "x" + DEFAULT_HEIGHT).split("x");
+            int width = Integer.parseInt(size[0]);
+            int height = Integer.parseInt(size[1]);
+            int maxIterations = Integer.parseInt(options.getOrDefault("iterations", "100"));
+            boolean escapeTime = options.getOrDefault("mode", "periodic").equals("escape");
+
+            // Same parameter generation as the "New Random Fractal" button
+            Random random = options.containsKey("seed")
+                    ? new Random(Long.parseLong(options.get("seed")))
+                    : new Random();
+            double[] randomParams = new double[6];
+            for (int i = 0; i < randomParams.length; i++) {
+                randomParams[i] = random.nextDouble() * 4 - 2;
+            }
+            int fractalVariant = random.nextInt(4);
+            if (options.containsKey("variant")) {
+                fractalVariant = Integer.parseInt(options.get("variant")) - 1;
+            }
+
+            ReferenceOrbit reference = null;
+            if (escapeTime && fractalType.equals("Mandelbrot Set") && zoom > DEEP_ZOOM_THRESHOLD) {
+                reference = new ReferenceOrbit(centerX, centerY, maxIterations, precisionFor(zoom));
+            }
+            return new FractalView(fractalType, fractalVariant, randomParams, maxIterations,
+                    centerX.doubleValue(), centerY.doubleValue(), zoom, width, height, escapeTime, reference,
+                    Integer.parseInt(options.getOrDefault("aa", "0")),
+                    Boolean.parseBoolean(options.getOrDefault("subdivide", "false")));
+        }
+
+        static RowSink openSink(Map<String, String> options, String output, int width, int height)
+                throws IOException {
+            String format = options.getOrDefault("format", output.toLowerCase().endsWith(".ppm") ? "ppm" : "png");
+            return format.equals("ppm")
+                    ? new PpmRowSink(new FileOutputStream(output), width, height)
+                    : new PngRowSink(new FileOutputStream(output), width, height);
+        }
+
+        // Renders view band by band, colouring rows into sink and/or storing the values
+        // in field (either may be null). Up to lookahead bands beyond the one being
+        // written are already in the works.
+        static void render(FractalView view, TileSource tiles, int lookahead, Coloring coloring, RowSink sink,
+                FieldFile field) throws Exception {
+            int bands = (view.height + TILE_SIZE - 1) / TILE_SIZE;
+            int[] band = new int[view.width * TILE_SIZE];
+            ArrayDeque<List<Future<TileField>>> queued = new ArrayDeque<>();
+            int submitted = 0;
+
+            for (int b = 0; b < bands; b++) {
+                while (submitted < bands && submitted <= b + lookahead) {
+                    queued.add(submitBand(view, tiles, submitted++));
+                }
+                List<Future<TileField>> current = queued.poll();
+
+                int top = b * TILE_SIZE;
+                int bandHeight = Math.min(TILE_SIZE, view.height - top);
+                List<Rectangle> bandTiles = bandTiles(view, top);
+                List<TileField> fields = new ArrayList<>();
+                for (Future<TileField> tile : current) {
+                    fields.add(tile.get());
+                }
+
+                if (field != null) {
+                    field.writeBand(top, bandHeight, bandTiles, fields);
+                }
+                if (sink != null) {
+                    for (int i = 0; i < bandTiles.size(); i++) {
+                        Rectangle tile = bandTiles.get(i);
+                        coloring.shade(fields.get(i), new Rectangle(tile.x, 0, tile.width, tile.height), band,
+                                view.width, bandHeight);
+                    }
+                    for (int y = 0; y < bandHeight; y++) {
+                        sink.writeRow(band, y * view.width);
+                    }
+                }
+
+                System.err.printf("\rRendered %d/%d rows", top + bandHeight, view.height);
+            }
+            System.err.println();
+        }
+
+        private static List<Future<TileField>> submitBand(FractalView view, TileSource tiles, int band) {
+            List<Future<TileField>> futures = new ArrayList<>();
+            for (Rectangle tile : bandTiles(view, band * TILE_SIZE)) {
+                futures.add(tiles.submit(tile));
+            }
+            return futures;
+        }
+
+        private static List<Rectangle> bandTiles(FractalView view, int top) {
+            List<Rectangle> tiles = new ArrayList<>();
+            int height = Math.min(TILE_SIZE, view.height - top);
+            for (int x = 0; x < view.width; x += TILE_SIZE) {
+                tiles.add(new Rectangle(x, top, Math.min(TILE_SIZE, view.width - x), height));
+            }
+            return tiles;
+        }
+
+        static Map<String, String> parseOptions(String[] args) {
+            Map<String, String> options = new HashMap<>();
+            for (int i = 1; i < args.length; i++) {
+                if (!args[i].startsWith("--") || i + 1 >= args.length)
+                    throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+                options.put(args[i].substring(2), args[++i]);
+            }
+            return options;
+        }
+    }
+
+    // Somewhere tiles of a batch render get computed: the local pool or remote workers
+    private interface TileSource {
+        Future<TileField> submit(Rectangle tile);
+    }
+
+    // Coordinator side of distributed batch rendering. Workers connect to a socket,
+    // receive the batch options (from which they rebuild the exact same view) and
+    // then a stream of tile jobs, which they answer with tile fields in any order.
+    // Each worker gets twice its thread count of jobs at a time. A worker that drops
+    // the connection or stays silent for --tile-timeout has its outstanding tiles
+    // queued again for the others, and a tile that fails MAX_ATTEMPTS times fails the
+    // render. Local workers that die are restarted. When tiles are waiting but no
+    // worker is connected, the render fails once no local worker is left to connect
+    // (without --listen) or after --tile-timeout with nobody connected.
+    private static final class TileCoordinator implements TileSource, Closeable {
+        static final int MAGIC = 0x46524A42; // "FRJB"
+        private static final int MAX_ATTEMPTS = 3;
+
+        private final ServerSocket server;
+        private final Map<String, String> options;
+        private final int timeoutMillis;
+        private final boolean remoteWorkers; // --listen given, so workers may still connect from elsewhere
+        private final LinkedBlockingDeque<Job> pending = new LinkedBlockingDeque<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+        private final List<Process> localWorkers = new CopyOnWriteArrayList<>();
+        private final AtomicInteger restartsLeft = new AtomicInteger();
+        private volatile boolean closed;
+
+        private TileCoordinator(ServerSocket server, Map<String, String> options, int timeoutMillis) {
+            this.server = server;
+            this.options = options;
+            this.timeoutMillis = timeoutMillis;
+            this.remoteWorkers = options.containsKey("listen");
+        }
+
+        static TileCoordinator start(Map<String, String> options) throws IOException {
+            int port = Integer.parseInt(options.getOrDefault("listen", "0"));
+            int localWorkers = Integer.parseInt(options.getOrDefault("local-workers", "0"));
+            int timeout = (int) (Double.parseDouble(options.getOrDefault("tile-timeout", "120")) * 1000);
+
+            TileCoordinator coordinator = new TileCoordinator(new ServerSocket(port), options, timeout);
+            Thread acceptor = new Thread(coordinator::acceptWorkers, "fractal-coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            Thread watchdog = new Thread(coordinator::watchWorkers, "fractal-watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+
+            System.err.println("Waiting for workers on port " + coordinator.server.getLocalPort());
+            coordinator.restartsLeft.set(localWorkers * MAX_ATTEMPTS);
+            for (int i = 0; i < localWorkers; i++) {
+                coordinator.startLocalWorker();
+            }
+            return coordinator;
+        }
+
+        @Override
+        public Future<TileField> submit(Rectangle tile) {
+            Job job = new Job(nextId.getAndIncrement(), tile);
+            pending.add(job);
+            return job.result;
+        }
+
+        // Runs this program again as a worker connecting back to this coordinator
+        private void startLocalWorker() throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            String sourceFile = System.getProperty("jdk.launcher.sourcefile");
+            if (sourceFile != null) {
+                command.add(sourceFile); // Launched as `java FractalGenerator.java`
+            } else {
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(FractalGenerator.class.getName());
+            }
+            command.add("--worker");
+            command.add("127.0.0.1:" + server.getLocalPort());
+
+            Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            localWorkers.add(process);
+            process.onExit().thenRun(() -> {
+                // The replacement is listed before this one goes, so the watchdog never sees a gap
+                if (!closed && process.exitValue() != 0 && restartsLeft.getAndDecrement() > 0) {
+                    try {
+                        System.err.println("Restarting local worker (exit code " + process.exitValue() + ")");
+                        startLocalWorker();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                localWorkers.remove(process);
+            });
+        }
+
+        // Fails every waiting tile once no worker can take them, so the render ends with
+        // an error instead of waiting forever
+        private void watchWorkers() {
+            long idleSince = System.nanoTime();
+            while (!closed) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!connections.isEmpty() || pending.isEmpty()) {
+                    idleSince = System.nanoTime();
+                    continue;
+                }
+                boolean timedOut = System.nanoTime() - idleSince >= timeoutMillis * 1_000_000L;
+                if (timedOut || (!remoteWorkers && localWorkers.isEmpty())) {
+                    String reason = remoteWorkers || !localWorkers.isEmpty()
+                            ? "No worker connected for " + timeoutMillis / 1000 + " s"
+                            : "All local workers failed";
+                    Job job;
+                    while ((job = pending.poll()) != null) {
+                        job.result.completeExceptionally(new IOException(reason + "; tile at " + job.tile.x + ","
+                                + job.tile.y + " was not rendered"));
+                    }
+                }
+            }
+        }
+
+        private void acceptWorkers() {
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    connections.add(socket);
+                    Thread link = new Thread(() -> serve(socket), "fractal-link-" + socket.getRemoteSocketAddress());
+                    link.setDaemon(true);
+                    link.start();
+                } catch (IOException e) {
+                    if (!closed) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        // Feeds one worker from a sender thread and collects its results on this one
+        private void serve(Socket socket) {
+            Map<Integer, Job> inFlight = new ConcurrentHashMap<>();
+            AtomicBoolean dead = new AtomicBoolean();
+            Thread sender = null;
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out.writeInt(MAGIC);
+                out.writeInt(options.size());
+                for (Map.Entry<String, String> option : options.entrySet()) {
+                    out.writeUTF(option.getKey());
+                    out.writeUTF(option.getValue());
+                }
+                out.flush();
+                if (in.readInt() != MAGIC)
+                    throw new IOException("not a fractal worker");
+                Semaphore window = new Semaphore(2 * Math.max(1, in.readInt()));
+
+                sender = new Thread(() -> {
+                    try {
+                        while (true) {
+                            window.acquire();
+                            Job job = pending.take();
+                            inFlight.put(job.id, job);
+                            if (dead.get()) {
+                                // The receiver already gave up on this worker
+                                requeue(inFlight.remove(job.id), null);
+                                return;
+                            }
+                            out.writeInt(job.id);
+                            out.writeInt(job.tile.x);
+                            out.writeInt(job.tile.y);
+                            out.writeInt(job.tile.width);
+                            out.writeInt(job.tile.height);
+                            out.flush();
+                        }
+                    } catch (InterruptedException | IOException e) {
+                        closeQuietly(socket); // The receiver requeues what was sent
+                    }
+                }, "fractal-send-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+
+                socket.setSoTimeout(timeoutMillis);
+                while (true) {
+                    int id;
+                    try {
+                        id = in.readInt();
+                    } catch (SocketTimeoutException e) {
+                        if (inFlight.isEmpty())
+                            continue; // Idle, not stuck
+                        throw e;
+                    }
+                    boolean ok = in.readBoolean();
+                    TileField field = ok ? readField(in) : null;
+                    String error = ok ? null : in.readUTF();
+
+                    Job job = inFlight.remove(id);
+                    window.release();
+                    if (job != null && ok) {
+                        job.result.complete(field);
+                    } else if (job != null) {
+                        requeue(job, new IOException(error));
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Lost worker " + socket.getRemoteSocketAddress() + ": " + e);
+                }
+            } finally {
+                dead.set(true);
+                if (sender != null) {
+                    sender.interrupt();
+                }
+                closeQuietly(socket);
+                connections.remove(socket);
+                for (Integer id : inFlight.keySet()) {
+                    requeue(inFlight.remove(id), null);
+                }
+            }
+        }
+
+        private void requeue(Job job, IOException cause) {
+            if (job == null || job.result.isDone())
+                return;
+            if (++job.attempts >= MAX_ATTEMPTS) {
+                job.result.completeExceptionally(
+                        new IOException("Tile at " + job.tile.x + "," + job.tile.y + " failed "
+                                + job.attempts + " times", cause));
+            } else {
+                pending.addFirst(job); // Ahead of later tiles, the band writer is waiting for it
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Already failing; nothing more to do
+            }
+        }
+
+        static void writeField(DataOutputStream out, TileField field) throws IOException {
+            out.writeInt(field.smooth.length);
+            for (float value : field.smooth) {
+                out.writeFloat(value);
+            }
+            out.writeInt(field.edges.length);
+            out.writeInt(field.samplesPerEdge);
+            for (int edge : field.edges) {
+                out.writeInt(edge);
+            }
+            for (int i = 0; i < field.edges.length * field.samplesPerEdge; i++) {
+                out.writeFloat(field.edgeSamples[i]);
+            }
+        }
+
+        static TileField readField(DataInputStream in) throws IOException {
+            TileField field = new TileField(in.readInt());
+            for (int i = 0; i < field.smooth.length; i++) {
+                field.smooth[i] = in.readFloat();
+            }
+            int[] edges = new int[in.readInt()];
+            int samplesPerEdge = in.readInt();
+            float[] edgeSamples = new float[edges.length * samplesPerEdge];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = in.readInt();
+            }
+            for (int i = 0; i < edgeSamples.length; i++) {
+                edgeSamples[i] = in.readFloat();
+            }
+            field.setEdges(edges, edgeSamples, samplesPerEdge);
+            return field;
+        }
+
+        // Disconnecting is the workers' signal to exit
+        @Override
+        public void close() {
+            closed = true;
+            closeQuietly(server);
+            for (Socket socket : connections) {
+                closeQuietly(socket);
+            }
+            for (Process process : localWorkers) {
+                try {
+                    if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                        process.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    process.destroy();
+                }
+            }
+        }
+
+        private static final class Job {
+            final int id;
+            final Rectangle tile;
+            final CompletableFuture<TileField> result = new CompletableFuture<>();
+            int attempts; // Only touched by whichever thread currently owns the job
+
+            Job(int id, Rectangle tile) {
+                this.id = id;
+                this.tile = tile;
+            }
+        }
+    }
+
+    // Worker side (`--worker HOST:PORT`): renders the coordinator's tiles on every core
+    // until the coordinator disconnects
+    private static final class TileWorker {
+        static final String USAGE = "Usage: java FractalGenerator --worker HOST:PORT";
+
+        static void run(String[] args) throws IOException {
+            if (args.length != 2 || !args[1].contains(":"))
+                throw new IllegalArgumentException("Expected the coordinator address as HOST:PORT");
+            String host = args[1].substring(0, args[1].lastIndexOf(':'));
+            int port = Integer.parseInt(args[1].substring(args[1].lastIndexOf(':') + 1));
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readInt() != TileCoordinator.MAGIC)
+                    throw new IOException("Not a fractal coordinator: " + args[1]);
+                Map<String, String> options = new HashMap<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    options.put(in.readUTF(), in.readUTF());
+                }
+                FractalView view = BatchRenderer.createView(options);
+                out.writeInt(TileCoordinator.MAGIC);
+                out.writeInt(threads);
+                out.flush();
+
+                while (true) {
+                    int id;
+                    try {
+                        id = in.readInt();
+                    } catch (EOFException e) {
+                        return; // Render finished
+                    }
+                    Rectangle tile = new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                    pool.execute(() -> {
+                        TileField field = null;
+                        String error = null;
+                        try {
+                            field = renderTile(view, tile);
+                        } catch (RuntimeException e) {
+                            error = e.toString();
+                        }
+                        synchronized (out) {
+                            try {
+                                out.writeInt(id);
+                                out.writeBoolean(field != null);
+                                if (field != null) {
+                                    TileCoordinator.writeField(out, field);
+                                } else {
+                                    out.writeUTF(error);
+                                }
+                                out.flush();
+                            } catch (IOException e) {
+                                closeSocket(socket); // Ends the read loop
+                            }
+                        }
+                    });
+                }
+            } catch (SocketException e) {
+                // Coordinator went away mid-render: nothing left to do for it
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private static void closeSocket(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    // Renders a zoom path as numbered frames (`--animate`). The zoom changes
+    // geometrically and the centre moves so the end point drifts steadily into place.
+    // Each frame starts from the previous frame's iteration data: a pixel takes over a
+    // previous sample whose true position lies within --tolerance pixels of its own,
+    // and only pixels without one (the newly exposed border, or the gaps opening up
+    // when zooming in) plus a rotating --refresh fraction of rows are iterated again.
+    private static final class ZoomSequencer {
+        static final String USAGE = String.join("\n",
+                "Usage: java FractalGenerator --animate --output frame_%05d.png [options]",
+                "  The --batch options --type, --mode, --center-x, --center-y, --zoom, --iterations,",
+                "  --size, --seed, --variant, --palette, --coloring and --format, giving the start",
+                "  view (anti-aliasing, subdivision and the field/worker options do not apply), plus:",
+                "  --frames N          Number of frames (default 60)",
+                "  --end-zoom Z        Zoom of the last frame (default: start zoom)",
+                "  --end-center-x X    Centre of the last frame (default: start centre)",
+                "  --end-center-y Y",
+                "  --tolerance T       Max distance in pixels of a reused sample (default 0.5,",
+                "                      i.e. anywhere inside the pixel it stands in for)",
+                "  --refresh F         Fraction of rows recomputed every frame (default 0.05)",
+                "  --cycle C           Colour-cycling shift per frame in smooth iterations (default 0)");
+
+        // Batch options that have no effect on reused per-pixel samples
+        private static final String[] UNSUPPORTED = { "aa", "subdivide", "field", "recolor", "listen",
+                "local-workers", "tile-timeout" };
+
+        static void run(String[] args) throws Exception {
+            Map<String, String> options = BatchRenderer.parseOptions(args);
+            String output = options.get("output");
+            if (output == null || !output.contains("%"))
+                throw new IllegalArgumentException("--output must be a pattern such as frame_%05d.png");
+            for (String option : UNSUPPORTED) {
+                if (options.containsKey(option))
+                    throw new IllegalArgumentException("--" + option + " is not supported with --animate");
+            }
+            // Every frame must see the same random parameters
+            options.putIfAbsent("seed", Long.toString(new Random().nextLong()));
+
+            int frames = Integer.parseInt(options.getOrDefault("frames", "60"));
+            double startZoom = Double.parseDouble(options.getOrDefault("zoom", "1"));
+            double endZoom = Double.parseDouble(options.getOrDefault("end-zoom", Double.toString(startZoom)));
+            BigDecimal startX = new BigDecimal(options.getOrDefault("center-x", "0"));
+            BigDecimal startY = new BigDecimal(options.getOrDefault("center-y", "0"));
+            BigDecimal endX = new BigDecimal(options.getOrDefault("end-center-x", startX.toString()));
+            BigDecimal endY = new BigDecimal(options.getOrDefault("end-center-y", startY.toString()));
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.5"));
+            double refresh = Double.parseDouble(options.getOrDefault("refresh", "0.05"));
+            int refreshPeriod = refresh > 0 ? Math.max(1, (int) Math.round(1 / refresh)) : 0;
+            double cycle = Double.parseDouble(options.getOrDefault("cycle", "0"));
+            MathContext mc = precisionFor(Math.max(startZoom, endZoom));
+
+            ExecutorService pool = Executors.newWorkStealingPool();
+            try {
+                ZoomFrame previous = null;
+                long computed = 0;
+                long total = 0;
+                for (int i = 0; i < frames; i++) {
+                    double t = frames > 1 ? i / (double) (frames - 1) : 0;
+                    double zoom = startZoom * Math.pow(endZoom / startZoom, t);
+                    double s = endZoom == startZoom ? t : (1 - startZoom / zoom) / (1 - startZoom / endZoom);
+                    BigDecimal centerX = startX.add(endX.subtract(startX).multiply(new BigDecimal(s), mc), mc);
+                    BigDecimal centerY = startY.add(endY.subtract(startY).multiply(new BigDecimal(s), mc), mc);
+
+                    FractalView view = BatchRenderer.createView(options, centerX, centerY, zoom);
+                    ZoomFrame frame = new ZoomFrame(view, centerX, centerY, endX, endY);
+                    int frameComputed = frame.fill(previous, pool, tolerance, refreshPeriod, i);
+                    Coloring coloring = BatchRenderer.createColoring(options, view.fractalType, view.fractalVariant,
+                            view.randomParams, view.maxIterations, frame::forEachValue);
+                    frame.write(BatchRenderer.openSink(options, String.format(output, i), view.width, view.height),
+                            new Coloring(coloring.palette, i * cycle, coloring.equalizer));
+
+                    computed += frameComputed;
+                    total += view.width * (long) view.height;
+                    System.err.printf("\rFrame %d/%d: %.1f%% of pixels iterated", i + 1, frames,
+                            100.0 * frameComputed / (view.width * (long) view.height));
+                    previous = frame;
+                }
+                System.err.printf("%nIterated %.1f%% of all frame pixels%n", 100.0 * computed / total);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // One animation frame: the smooth iteration value of every pixel and the point it
+    // was actually sampled at, as an offset from the end centre of the zoom path (the
+    // offsets shrink with the view, so they keep their precision on deep zooms)
+    private static final class ZoomFrame {
+        private static final int BAND_HEIGHT = 16;
+
+        final FractalView view;
+        final double baseX; // Offset of the view centre from the end centre
+        final double baseY;
+        final float[] smooth;
+        final double[] sampleX;
+        final double[] sampleY;
+
+        ZoomFrame(FractalView view, BigDecimal centerX, BigDecimal centerY, BigDecimal endX, BigDecimal endY) {
+            this.view = view;
+            // Cacheable views snap their centre to the pixel grid, so correct for that
+            this.baseX = centerX.subtract(endX).doubleValue() + (view.centerX - centerX.doubleValue());
+            this.baseY = centerY.subtract(endY).doubleValue() + (view.centerY - centerY.doubleValue());
+            int size = view.width * view.height;
+            this.smooth = new float[size];
+            this.sampleX = new double[size];
+            this.sampleY = new double[size];
+        }
+
+        private double offsetX(double px) {
+            return baseX + (px - view.width / 2.0) * view.pixelX;
+        }
+
+        private double offsetY(double py) {
+            return baseY + (py - view.height / 2.0) * view.pixelY;
+        }
+
+        // Fills the frame in parallel bands of rows and returns how many pixels were iterated.
+        // Each row first takes what the previous frame can give; the remaining runs of
+        // pixels go through computeRow, and so through the SIMD kernel where it applies.
+        int fill(ZoomFrame previous, ExecutorService pool, double tolerance, int refreshPeriod, int frameIndex)
+                throws Exception {
+            double maxDx = tolerance * view.pixelX;
+            double maxDy = tolerance * view.pixelY;
+            AtomicInteger computed = new AtomicInteger();
+            List<Callable<Void>> bands = new ArrayList<>();
+
+            for (int top = 0; top < view.height; top += BAND_HEIGHT) {
+                int bandTop = top;
+                bands.add(() -> {
+                    int bandComputed = 0;
+                    boolean[] needed = new boolean[view.width];
+                    float[] values = new float[view.width];
+                    for (int py = bandTop; py < Math.min(bandTop + BAND_HEIGHT, view.height); py++) {
+                        boolean refresh = refreshPeriod > 0 && (py + frameIndex) % refreshPeriod == 0;
+                        double oy = offsetY(py);
+                        for (int px = 0; px < view.width; px++) {
+                            int i = py * view.width + px;
+                            double ox = offsetX(px);
+                            int match = previous == null || refresh ? -1 : previous.nearestSample(ox, oy, maxDx, maxDy);
+                            needed[px] = match < 0;
+                            if (match >= 0) {
+                                smooth[i] = previous.smooth[match];
+                                sampleX[i] = previous.sampleX[match];
+                                sampleY[i] = previous.sampleY[match];
+                            } else {
+                                sampleX[i] = ox;
+                                sampleY[i] = oy;
+                            }
+                        }
+
+                        for (int px = 0; px < view.width;) {
+                            if (!needed[px]) {
+                                px++;
+                                continue;
+                            }
+                            int end = px;
+                            while (end < view.width && needed[end]) {
+                                end++;
+                            }
+                            view.computeRow(px, py, 1, end - px, values);
+                            System.arraycopy(values, 0, smooth, py * view.width + px, end - px);
+                            bandComputed += end - px;
+                            px = end;
+                        }
+                    }
+                    computed.addAndGet(bandComputed);
+                    return null;
+                });
+            }
+
+            for (Future<Void> band : pool.invokeAll(bands)) {
+                band.get(); // Rethrows any failure from the band
+            }
+            return computed.get();
+        }
+
+        // Index of the sample closest to (x, y) among the 3x3 pixels around it, if it
+        // lies within the given distances; -1 otherwise
+        int nearestSample(double x, double y, double maxDx, double maxDy) {
+            int cx = (int) Math.round((x - baseX) / view.pixelX + view.width / 2.0);
+            int cy = (int) Math.round((y - baseY) / view.pixelY + view.height / 2.0);
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+
+            for (int py = Math.max(cy - 1, 0); py <= Math.min(cy + 1, view.height - 1); py++) {
+                for (int px = Math.max(cx - 1, 0); px <= Math.min(cx + 1, view.width - 1); px++) {
+                    int i = py * view.width + px;
+                    double dx = Math.abs(sampleX[i] - x);
+                    double dy = Math.abs(sampleY[i] - y);
+                    if (dx <= maxDx && dy <= maxDy) {
+                        double distance = dx / maxDx + dy / maxDy;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = i;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        void forEachValue(DoubleConsumer action) {
+            for (float value : smooth) {
+                action.accept(value);
+            }
+        }
+
+        void write(RowSink sink, Coloring coloring) throws IOException {
+            try (RowSink out = sink) {
+                int[] row = new int[view.width];
+                for (int py = 0; py < view.height; py++) {
+                    for (int px = 0; px < view.width; px++) {
+                        row[px] = coloring.color(smooth[py * view.width + px]);
+                    }
+                    out.writeRow(row, 0);
+                }
+            }
+        }
+    }
+
+    // Render throughput benchmarks (`--benchmark`). A JMH module would need a build
+    // this project does not have, so this follows the same method in place: every case
+    // renders a fixed frame tile by tile on the calling thread, over and over for
+    // --warmup untimed iterations and then --iterations timed ones, each lasting at
+    // least --time milliseconds. Reported are pixels per second (mean and standard
+    // deviation over the timed iterations) and bytes allocated per pixel. --csv saves
+    // the results; --baseline compares them with an earlier CSV and exits with status
+    // 1 when a case lost more than --tolerance of its throughput, so the suite can
+    // gate a build. All cases share one JVM, and the JIT profiles whatever ran
+    // before, so compare runs made with the same --filter.
+    private static final class Benchmark {
+        static final String USAGE = String.join("\n",
+                "Usage: java FractalGenerator --benchmark [options]",
+                "  --filter TEXT       Only run cases whose name contains TEXT",
+                "  --warmup N          Untimed iterations per case (default 2)",
+                "  --iterations N      Timed iterations per case (default 5)",
+                "  --time MS           Minimum length of one iteration (default 200)",
+                "  --size WxH          Frame size of one iteration (default 128x96)",
+                "  --csv FILE          Write the results as CSV",
+                "  --baseline FILE     Compare with the CSV of an earlier run",
+                "  --tolerance F       Allowed throughput loss against the baseline (default 0.10)");
+
+        private static final int[] ITERATIONS = { 100, 1000 };
+        private static final double[] ZOOMS = { 1, 1e3 };
+        // Deep-zoom case: the seahorse valley, far past double precision
+        private static final String DEEP_X = "-0.743643887037158704752191506114774";
+        private static final String DEEP_Y = "0.131825904205311970493132056385139";
+        private static final double DEEP_ZOOM = 1e12;
+        // Fixed Random Fractal parameters so results are comparable between runs
+        private static final double[] RANDOM_PARAMS = { 0.7, -1.3, 1.1, 0.4, -0.6, 0.9 };
+
+        // Consumed results, so the JIT cannot drop the work being measured
+        static volatile double blackhole;
+
+        // One measured workload; run() does one iteration and returns the pixels it produced
+        private interface Case {
+            long run();
+        }
+
+        // Repeats the case for at least the given time; returns { pixels, elapsed nanoseconds }
+        private static long[] iteration(Case benchmark, long nanos) {
+            long start = System.nanoTime();
+            long pixels = 0;
+            long elapsed;
+            do {
+                pixels += benchmark.run();
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < nanos);
+            return new long[] { pixels, elapsed };
+        }
+
+        static void run(String[] args) throws IOException {
+            Map<String, String> options = BatchRenderer.parseOptions(args);
+            String filter = options.getOrDefault("filter", "");
+            int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+            int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+            long iterationNanos = Long.parseLong(options.getOrDefault("time", "200")) * 1_000_000;
+            String[] size = options.getOrDefault("size", "128x96").split("x");
+            int width = Integer.parseInt(size[0]);
+            int height = Integer.parseInt(size[1]);
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.10"));
+            if (iterations < 1)
+                throw new IllegalArgumentException("--iterations must be at least 1");
+
+            Map<String, double[]> baseline = options.containsKey("baseline")
+                    ? readCsv(Paths.get(options.get("baseline")))
+                    : new HashMap<>();
+            System.out.printf("Kernel: %s, frame %dx%d, %d warm-up + %d timed iterations%n",
+                    VECTOR_KERNEL != null ? "SIMD" : "scalar", width, height, warmup, iterations);
+            System.out.printf("%-48s %14s %12s %10s%s%n", "Case", "pixels/s", "error", "B/pixel",
+                    baseline.isEmpty() ? "" : "   vs baseline");
+
+            StringBuilder csv = new StringBuilder("case,pixels_per_second,error,bytes_per_pixel\n");
+            int regressions = 0;
+            for (Map.Entry<String, Case> entry : cases(width, height).entrySet()) {
+                String name = entry.getKey();
+                if (!name.contains(filter))
+                    continue;
+
+                double[] result = measure(entry.getValue(), warmup, iterations, iterationNanos);
+                csv.append(String.format(Locale.ROOT, "%s,%.1f,%.1f,%.2f%n", name, result[0], result[1], result[2]));
+
+                String comparison = "";
+                double[] base = baseline.get(name);
+                if (base != null) {
+                    double change = result[0] / base[0] - 1;
+                    boolean regressed = change < -tolerance;
+                    regressions += regressed ? 1 : 0;
+                    comparison = String.format("   %+6.1f%%%s", change * 100, regressed ? "  REGRESSION" : "");
+                }
+                System.out.printf("%-48s %14.0f %12.0f %10.2f%s%n", name, result[0], result[1], result[2], comparison);
+            }
+
+            if (options.containsKey("csv")) {
+                Files.write(Paths.get(options.get("csv")), csv.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (regressions > 0) {
+                System.out.printf("%d case(s) slower than the baseline by more than %.0f%%%n", regressions,
+                        tolerance * 100);
+                System.exit(1);
+            }
+        }
+
+        // Every fractal type in both iteration modes, every Random Fractal variant, at
+        // each iteration count and zoom; plus a perturbation render and the colouring pass
+        private static Map<String, Case> cases(int width, int height) {
+            Map<String, Case> cases = new LinkedHashMap<>();
+            for (String type : FRACTAL_TYPES) {
+                boolean random = type.equals("Random Fractal");
+                for (int variant = 0; variant < (random ? 4 : 1); variant++) {
+                    // Random Fractal ignores the iteration mode
+                    for (boolean escapeTime : random ? new boolean[] { false } : new boolean[] { false, true }) {
+                        for (int maxIterations : ITERATIONS) {
+                            for (double zoom : ZOOMS) {
+                                String name = String.format(Locale.ROOT, "%s%s %s it=%d zoom=%.0e", type,
+                                        random ? " v" + (variant + 1) : "", escapeTime ? "escape" : "periodic",
+                                        maxIterations, zoom);
+                                // Zoomed cases look at the edge of the set, where iteration counts vary
+                                FractalView view = new FractalView(type, variant, RANDOM_PARAMS, maxIterations,
+                                        zoom > 1 ? -0.75 : 0, zoom > 1 ? 0.1 : 0, zoom, width, height, escapeTime,
+                                        null, 0, false);
+                                cases.put(name, () -> render(view));
+                            }
+                        }
+                    }
+                }
+            }
+
+            BigDecimal deepX = new BigDecimal(DEEP_X);
+            BigDecimal deepY = new BigDecimal(DEEP_Y);
+            ReferenceOrbit reference = new ReferenceOrbit(deepX, deepY, 1000, precisionFor(DEEP_ZOOM));
+            FractalView deep = new FractalView("Mandelbrot Set", 0, RANDOM_PARAMS, 1000, deepX.doubleValue(),
+                    deepY.doubleValue(), DEEP_ZOOM, width, height, true, reference, 0, false);
+            cases.put("Mandelbrot Set perturbation it=1000 zoom=1e+12", () -> render(deep));
+
+            // Colouring a stored field, the whole cost of a palette change or cycling step
+            FractalView colored = new FractalView("Mandelbrot Set", 0, RANDOM_PARAMS, 1000, -0.75, 0.1, 1e3,
+                    width, height, true, null, 0, false);
+            Rectangle frame = new Rectangle(0, 0, width, height);
+            TileField field = renderTile(colored, frame);
+            Palette palette = new Palette("Mandelbrot Set", 0, RANDOM_PARAMS, 1000);
+            int[] pixels = new int[width * height];
+            cases.put("Coloring smooth", () -> shade(new Coloring(palette, 0, null), field, frame, pixels));
+            cases.put("Coloring equalized", () -> {
+                try {
+                    return shade(new Coloring(palette, 0, Equalizer.of(action -> {
+                        for (float value : field.smooth) {
+                            action.accept(value);
+                        }
+                    })), field, frame, pixels);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // In-memory values never throw
+                }
+            });
+            return cases;
+        }
+
+        private static long render(FractalView view) {
+            double sum = 0;
+            for (int y = 0; y < view.height; y += TILE_SIZE) {
+                for (int x = 0; x < view.width; x += TILE_SIZE) {
+                    Rectangle tile = new Rectangle(x, y, Math.min(TILE_SIZE, view.width - x),
+                            Math.min(TILE_SIZE, view.height - y));
+                    sum += renderTile(view, tile).smooth[0];
+                }
+            }
+            blackhole = sum;
+            return view.width * (long) view.height;
+        }
+
+        private static long shade(Coloring coloring, TileField field, Rectangle frame, int[] pixels) {
+            coloring.shade(field, frame, pixels, frame.width, frame.height);
+            blackhole = pixels[pixels.length / 2];
+            return pixels.length;
+        }
+
+        // { mean pixels/s, standard deviation, bytes allocated per pixel }
+        private static double[] measure(Case benchmark, int warmup, int iterations, long iterationNanos) {
+            for (int i = 0; i < warmup; i++) {
+                iteration(benchmark, iterationNanos);
+            }
+
+            double[] rates = new double[iterations];
+            long pixels = 0;
+            long allocatedBefore = allocatedBytes();
+            for (int i = 0; i < iterations; i++) {
+                long[] result = iteration(benchmark, iterationNanos);
+                rates[i] = result[0] / (result[1] / 1e9);
+                pixels += result[0];
+            }
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            double mean = Arrays.stream(rates).average().orElse(0);
+            double variance = Arrays.stream(rates).map(r -> (r - mean) * (r - mean)).sum()
+                    / Math.max(1, iterations - 1);
+            double bytesPerPixel = allocatedBefore < 0 ? Double.NaN : (double) allocated / pixels;
+            return new double[] { mean, Math.sqrt(variance), bytesPerPixel };
+        }
+
+        // Bytes allocated so far by this thread, or -1 where the JVM cannot tell
+        private static long allocatedBytes() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threads)
+                        .getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return -1;
+        }
+
+        private static Map<String, double[]> readCsv(Path path) throws IOException {
+            Map<String, double[]> results = new HashMap<>();
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",");
+                if (fields.length < 4 || fields[0].equals("case"))
+                    continue;
+                results.put(fields[0], new double[] { Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3]) });
+            }
+            return results;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            switch (args[0]) {
+                case "--animate":
+                    runCommand(ZoomSequencer::run, args, ZoomSequencer.USAGE);
+                    return;
+                case "--benchmark":
+                    runCommand(Benchmark::run, args, Benchmark.USAGE);
+                    return;
+                case "--worker":
+                    runCommand(TileWorker::run, args, TileWorker.USAGE);
+                    return;
+                case "--batch":
+                    runCommand(BatchRenderer::run, args, BatchRenderer.USAGE);
+                    return;
+            }
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            new FractalGenerator().setVisible(true);
+        });
+    }
+
+    // Entry point of a headless mode, given the full argument list
+    private interface Command {
+        void run(String[] args) throws Exception;
+    }
+
+    // Runs a headless mode and exits with 2 and its usage on bad arguments, 1 on failure
+    private static void runCommand(Command command, String[] args, String usage) {
+        try {
+            command.run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD escape-time kernel for FractalGenerator, iterating one lane per pixel.
+// FractalGenerator loads it reflectively and falls back to its scalar kernels when
+// this class or the incubator module is missing. Build and run with:
+//   javac --add-modules jdk.incubator.vector FractalGenerator.java FractalVectorKernel.java
+//   java --add-modules jdk.incubator.vector FractalGenerator
+public class FractalVectorKernel implements FractalGenerator.EscapeKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void mandelbrot(double[] cx, double[] cy, int n, int maxIterations, double bailoutSq,
+            double[] iterationsOut, double[] magnitudeSqOut) {
+        int bound = SPECIES.loopBound(n);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector cr = DoubleVector.fromArray(SPECIES, cx, i);
+            DoubleVector ci = DoubleVector.fromArray(SPECIES, cy, i);
+
+            // Main cardioid and period-2 bulb lanes are interior from the start
+            DoubleVector qx = cr.sub(0.25);
+            DoubleVector q = qx.mul(qx).add(ci.mul(ci));
+            VectorMask<Double> interior = q.mul(q.add(qx)).compare(VectorOperators.LE, ci.mul(ci).mul(0.25));
+            DoubleVector bx = cr.add(1);
+            interior = interior.or(bx.mul(bx).add(ci.mul(ci)).compare(VectorOperators.LE, 0.0625));
+
+            iterate(DoubleVector.zero(SPECIES), DoubleVector.zero(SPECIES), cr, ci, interior, maxIterations,
+                    bailoutSq, iterationsOut, magnitudeSqOut, i);
+        }
+        scalarTail(cx, cy, bound, n, maxIterations, bailoutSq, iterationsOut, magnitudeSqOut, true, 0, 0);
+    }
+
+    @Override
+    public void julia(double[] zx, double[] zy, int n, double cx, double cy, int maxIterations,
+            double bailoutSq, double[] iterationsOut, double[] magnitudeSqOut) {
+        int bound = SPECIES.loopBound(n);
+        DoubleVector cr = DoubleVector.broadcast(SPECIES, cx);
+        DoubleVector ci = DoubleVector.broadcast(SPECIES, cy);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            iterate(DoubleVector.fromArray(SPECIES, zx, i), DoubleVector.fromArray(SPECIES, zy, i), cr, ci,
+                    SPECIES.maskAll(false), maxIterations, bailoutSq, iterationsOut, magnitudeSqOut, i);
+        }
+        scalarTail(zx, zy, bound, n, maxIterations, bailoutSq, iterationsOut, magnitudeSqOut, false, cx, cy);
+    }
+
+    // Iterates z = z^2 + c on every lane. Escaped lanes are masked off and keep their
+    // final z, so the loop runs until the slowest lane escapes or maxIterations.
+    private static void iterate(DoubleVector zr, DoubleVector zi, DoubleVector cr, DoubleVector ci,
+            VectorMask<Double> interior, int maxIterations, double bailoutSq, double[] iterationsOut,
+            double[] magnitudeSqOut, int offset) {
+        VectorMask<Double> active = interior.not();
+        DoubleVector count = DoubleVector.zero(SPECIES);
+        DoubleVector magnitudeSq = DoubleVector.zero(SPECIES);
+
+        for (int iteration = 0; iteration < maxIterations && active.anyTrue(); iteration++) {
+            DoubleVector zr2 = zr.mul(zr);
+            DoubleVector zi2 = zi.mul(zi);
+            DoubleVector nzi = zr.mul(zi).mul(2).add(ci);
+            DoubleVector nzr = zr2.sub(zi2).add(cr);
+            zr = zr.blend(nzr, active);
+            zi = zi.blend(nzi, active);
+            count = count.add(1, active);
+
+            magnitudeSq = zr.mul(zr).add(zi.mul(zi));
+            active = active.andNot(magnitudeSq.compare(VectorOperators.GT, bailoutSq));
+        }
+
+        // Lanes still active never escaped; report them like the scalar kernels do
+        interior = interior.or(active);
+        count.sub(1).blend(-1, interior).intoArray(iterationsOut, offset);
+        magnitudeSq.intoArray(magnitudeSqOut, offset);
+    }
+
+    private static void scalarTail(double[] xs, double[] ys, int from, int n, int maxIterations, double bailoutSq,
+            double[] iterationsOut, double[] magnitudeSqOut, boolean mandelbrot, double juliaX, double juliaY) {
+        for (int i = from; i < n; i++) {
+            double x = mandelbrot ? 0 : xs[i];
+            double y = mandelbrot ? 0 : ys[i];
+            double cx = mandelbrot ? xs[i] : juliaX;
+            double cy = mandelbrot ? ys[i] : juliaY;
+            iterationsOut[i] = -1;
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double xtemp = x * x - y * y + cx;
+                y = 2 * x * y + cy;
+                x = xtemp;
+                magnitudeSqOut[i] = x * x + y * y;
+                if (magnitudeSqOut[i] > bailoutSq) {
+                    iterationsOut[i] = iteration;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -2,11 +2,21 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public class ParticleGravitySimulation extends JPanel {
-    private ArrayList<Particle> particles;
-    private ArrayList<Field> fields;
+    private final SimulationLoop loop;
     private Point mousePos;
     private boolean isAttracting;
     private boolean isRepelling;
@@ -14,19 +24,26 @@ public class ParticleGravitySimulation extends JPanel {
     private boolean isOrbitalMode = false;
     private boolean showVelocityVectors = true;
     private boolean showForceVectors = true;
-    private final double G = 1000; // Gravity constant (adjusted for screen space)
-    private final double dampening = 0.995; // Velocity dampening
-    private final int PARTICLE_RADIUS = 5;
-    private final double MAX_FORCE = 50.0; // Maximum force limit
-    private final double SOFT_RADIUS = 20.0; // Soft radius for force calculation
-    private double timeScale = 1.0;
+    private final int PARTICLE_RADIUS = Simulation.PARTICLE_RADIUS;
     private Color particleColor = new Color(0, 255, 255); // Cyan color for particles
     private Color orbitTrailColor = new Color(255, 255, 255, 30);
-    private int maxTrailPoints = 50;
+    private int framesThisSecond = 0;
+    private int framesPerSecond = 0;
+    private long fpsWindowStart = System.nanoTime();
+
+    // Drawing state reused every frame so painting does not allocate per particle
+    private static final Color GRID_COLOR = new Color(30, 30, 40);
+    private static final Color GLOW_COLOR = new Color(0, 150, 255, 50);
+    private static final Color ATTRACT_FIELD_COLOR = new Color(0, 255, 0, 50);
+    private static final Color REPEL_FIELD_COLOR = new Color(255, 0, 0, 50);
+    private static final AlphaComposite GLOW_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f);
+    private static final BasicStroke VECTOR_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private final Path2D.Float trailPath = new Path2D.Float();
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+    private final Line2D.Double line = new Line2D.Double();
 
     public ParticleGravitySimulation() {
-        particles = new ArrayList<>();
-        fields = new ArrayList<>();
+        loop = new SimulationLoop(new Simulation(1200, 800));
         setPreferredSize(new Dimension(1200, 800));
         setBackground(new Color(10, 10, 20)); // Darker blue background
         setupInteraction();
@@ -41,10 +58,13 @@ public class ParticleGravitySimulation extends JPanel {
         controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
 
         // Time scale slider
-        JSlider timeSlider = new JSlider(0, 200, 100);
+        JSlider timeSlider = new JSlider(0, 500, 100);
         timeSlider.setBackground(new Color(20, 20, 30));
         timeSlider.setForeground(Color.WHITE);
-        timeSlider.addChangeListener(e -> timeScale = timeSlider.getValue() / 100.0);
+        timeSlider.addChangeListener(e -> {
+            double timeScale = timeSlider.getValue() / 100.0;
+            loop.submit(sim -> sim.timeScale = timeScale);
+        });
 
         JLabel timeLabel = new JLabel("Time Scale: 1.0x");
         timeLabel.setForeground(Color.WHITE);
@@ -75,12 +95,57 @@ public class ParticleGravitySimulation extends JPanel {
         forceVectorsBox.setBackground(new Color(20, 20, 30));
         forceVectorsBox.addActionListener(e -> showForceVectors = forceVectorsBox.isSelected());
 
+        // Force solver
+        JCheckBox barnesHutBox = new JCheckBox("Barnes-Hut Solver", false);
+        barnesHutBox.setForeground(Color.WHITE);
+        barnesHutBox.setBackground(new Color(20, 20, 30));
+        barnesHutBox.addActionListener(e -> {
+            boolean selected = barnesHutBox.isSelected();
+            loop.submit(sim -> {
+                sim.useBarnesHut = selected;
+                sim.forceError = Double.NaN;
+            });
+        });
+
+        JSlider thetaSlider = new JSlider(0, 150, 50);
+        thetaSlider.setBackground(new Color(20, 20, 30));
+        thetaSlider.setForeground(Color.WHITE);
+        JLabel thetaLabel = new JLabel(String.format("Opening Angle: %.2f", 0.5));
+        thetaLabel.setForeground(Color.WHITE);
+        thetaSlider.addChangeListener(e -> {
+            double theta = thetaSlider.getValue() / 100.0;
+            thetaLabel.setText(String.format("Opening Angle: %.2f", theta));
+            loop.submit(sim -> sim.theta = theta);
+        });
+
+        // Integrator
+        JLabel integratorLabel = new JLabel("Integrator:");
+        integratorLabel.setForeground(Color.WHITE);
+        JComboBox<String> integratorBox = new JComboBox<>(Simulation.INTEGRATORS);
+        integratorBox.setMaximumSize(integratorBox.getPreferredSize());
+        integratorBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        integratorBox.addActionListener(e -> {
+            int index = integratorBox.getSelectedIndex();
+            loop.submit(sim -> sim.integrator = Simulation.createIntegrator(index));
+        });
+
+        // Collisions
+        JLabel collisionLabel = new JLabel("Collisions:");
+        collisionLabel.setForeground(Color.WHITE);
+        JComboBox<String> collisionBox = new JComboBox<>(Simulation.COLLISIONS);
+        collisionBox.setMaximumSize(collisionBox.getPreferredSize());
+        collisionBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        collisionBox.addActionListener(e -> {
+            int mode = collisionBox.getSelectedIndex();
+            loop.submit(sim -> sim.collisions = mode);
+        });
+
         // Add clear fields button
         JButton clearFieldsButton = new JButton("Clear Fields");
         clearFieldsButton.setBackground(new Color(50, 50, 60));
         clearFieldsButton.setForeground(Color.WHITE);
         clearFieldsButton.setFocusPainted(false);
-        clearFieldsButton.addActionListener(e -> fields.clear());
+        clearFieldsButton.addActionListener(e -> loop.submit(sim -> sim.fields.clear()));
         clearFieldsButton.setAlignmentX(Component.CENTER_ALIGNMENT);
 
         // Add components to control panel
@@ -93,6 +158,16 @@ public class ParticleGravitySimulation extends JPanel {
         controlPanel.add(velocityVectorsBox);
         controlPanel.add(forceVectorsBox);
         controlPanel.add(Box.createVerticalStrut(10));
+        controlPanel.add(barnesHutBox);
+        controlPanel.add(thetaLabel);
+        controlPanel.add(thetaSlider);
+        controlPanel.add(Box.createVerticalStrut(10));
+        controlPanel.add(integratorLabel);
+        controlPanel.add(integratorBox);
+        controlPanel.add(Box.createVerticalStrut(10));
+        controlPanel.add(collisionLabel);
+        controlPanel.add(collisionBox);
+        controlPanel.add(Box.createVerticalStrut(10));
         controlPanel.add(clearFieldsButton);
         controlPanel.add(Box.createVerticalStrut(10));
 
@@ -125,7 +200,8 @@ public class ParticleGravitySimulation extends JPanel {
             public void mousePressed(MouseEvent e) {
                 if (e.getButton() == MouseEvent.BUTTON1) {
                     if (isFieldPlacement) {
-                        fields.add(new Field(e.getX(), e.getY(), true));
+                        Field field = new Field(e.getX(), e.getY(), true);
+                        loop.submit(sim -> sim.fields.add(field));
                     } else if (isOrbitalMode) {
                         dragStart = e.getPoint();
                     } else {
@@ -133,13 +209,16 @@ public class ParticleGravitySimulation extends JPanel {
                     }
                 } else if (e.getButton() == MouseEvent.BUTTON3) {
                     if (isFieldPlacement) {
-                        fields.add(new Field(e.getX(), e.getY(), false));
+                        Field field = new Field(e.getX(), e.getY(), false);
+                        loop.submit(sim -> sim.fields.add(field));
                     } else {
                         isRepelling = true;
                     }
                 } else if (e.getButton() == MouseEvent.BUTTON2) {
-                    addParticle(e.getX(), e.getY());
+                    int x = e.getX(), y = e.getY();
+                    loop.submit(sim -> sim.addParticle(x, y));
                 }
+                sendMouse();
             }
 
             @Override
@@ -150,23 +229,27 @@ public class ParticleGravitySimulation extends JPanel {
                         double dx = e.getX() - dragStart.x;
                         double dy = e.getY() - dragStart.y;
                         double speed = Math.sqrt(dx * dx + dy * dy) * 0.1;
-                        addOrbitalParticle(dragStart.x, dragStart.y, dx * 0.1, dy * 0.1);
+                        Point start = dragStart;
+                        loop.submit(sim -> sim.particles.add(start.x, start.y, dx * 0.1, dy * 0.1));
                         dragStart = null;
                     }
                     isAttracting = false;
                 } else if (e.getButton() == MouseEvent.BUTTON3) {
                     isRepelling = false;
                 }
+                sendMouse();
             }
 
             @Override
             public void mouseMoved(MouseEvent e) {
                 mousePos = e.getPoint();
+                sendMouse();
             }
 
             @Override
             public void mouseDragged(MouseEvent e) {
                 mousePos = e.getPoint();
+                sendMouse();
             }
         };
 
@@ -178,11 +261,13 @@ public class ParticleGravitySimulation extends JPanel {
             public void keyPressed(KeyEvent e) {
                 switch (e.getKeyCode()) {
                     case KeyEvent.VK_SPACE:
-                        for (int i = 0; i < 10; i++)
-                            addRandomParticle();
+                        loop.submit(sim -> {
+                            for (int i = 0; i < 10; i++)
+                                sim.addRandomParticle();
+                        });
                         break;
                     case KeyEvent.VK_C:
-                        particles.clear();
+                        loop.submit(sim -> sim.particles.clear());
                         break;
                     case KeyEvent.VK_O:
                         isOrbitalMode = !isOrbitalMode;
@@ -193,148 +278,36 @@ public class ParticleGravitySimulation extends JPanel {
 
         setFocusable(true);
         addKeyListener(keyAdapter);
-    }
-
-    private void addOrbitalParticle(double x, double y, double vx, double vy) {
-        Particle p = new Particle(x, y, vx, vy);
-        p.trail = new ArrayList<>();
-        particles.add(p);
-    }
 
-    private void addParticle(double x, double y) {
-        Particle p = new Particle(x, y,
-                (Math.random() - 0.5) * 2,
-                (Math.random() - 0.5) * 2);
-        p.trail = new ArrayList<>();
-        particles.add(p);
-    }
-
-    private void addRandomParticle() {
-        double x = Math.random() * getWidth();
-        double y = Math.random() * getHeight();
-        addParticle(x, y);
-    }
-
-    private void startSimulation() {
-        javax.swing.Timer timer = new javax.swing.Timer(16, e -> {
-            updateParticles();
-            repaint();
+        // The walls follow the panel size
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                int width = getWidth(), height = getHeight();
+                loop.submit(sim -> {
+                    sim.width = width;
+                    sim.height = height;
+                });
+            }
         });
-        timer.start();
     }
 
-    private void updateParticles() {
-        for (Particle p : particles) {
-            // Store previous position for trail
-            p.trail.add(new Point2D.Double(p.x, p.y));
-            if (p.trail.size() > maxTrailPoints) {
-                p.trail.remove(0);
-            }
-
-            double totalFx = 0, totalFy = 0;
-
-            // Mouse interaction
-            if ((isAttracting || isRepelling) && mousePos != null) {
-                addFieldForce(p, mousePos.x, mousePos.y, isAttracting, totalFx, totalFy);
-            }
-
-            // Permanent fields interaction
-            for (Field field : fields) {
-                double[] forces = addFieldForce(p, field.x, field.y, field.isAttracting, totalFx, totalFy);
-                totalFx = forces[0];
-                totalFy = forces[1];
-            }
-
-            // Particle interactions
-            for (Particle other : particles) {
-                if (other != p) {
-                    double dx = other.x - p.x;
-                    double dy = other.y - p.y;
-                    double distSq = dx * dx + dy * dy + SOFT_RADIUS * SOFT_RADIUS;
-                    double dist = Math.sqrt(distSq);
-
-                    if (dist > PARTICLE_RADIUS * 2) {
-                        double force = (G * 0.1) / distSq;
-
-                        // Limit the maximum force
-                        force = Math.min(Math.abs(force), MAX_FORCE * 0.1) * Math.signum(force);
-
-                        totalFx += (dx / dist) * force;
-                        totalFy += (dy / dist) * force;
-                    }
-                }
-            }
-
-            // Apply velocity-dependent dampening
-            double speed = Math.sqrt(p.vx * p.vx + p.vy * p.vy);
-            double dampFactor = Math.pow(dampening, 1.0 + speed * 0.01);
-
-            // Update velocity and position with time scaling
-            p.vx += totalFx * timeScale;
-            p.vy += totalFy * timeScale;
-
-            // Apply dampening
-            p.vx *= dampFactor;
-            p.vy *= dampFactor;
-
-            // Additional speed limit
-            speed = Math.sqrt(p.vx * p.vx + p.vy * p.vy);
-            if (speed > MAX_FORCE) {
-                double scale = MAX_FORCE / speed;
-                p.vx *= scale;
-                p.vy *= scale;
-            }
-
-            p.x += p.vx * timeScale;
-            p.y += p.vy * timeScale;
-
-            // Bounce off walls with energy loss
-            if (p.x < 0) {
-                p.x = 0;
-                p.vx *= -0.8;
-            }
-            if (p.x > getWidth()) {
-                p.x = getWidth();
-                p.vx *= -0.8;
-            }
-            if (p.y < 0) {
-                p.y = 0;
-                p.vy *= -0.8;
-            }
-            if (p.y > getHeight()) {
-                p.y = getHeight();
-                p.vy *= -0.8;
-            }
-
-            // Store forces for visualization
-            p.lastFx = totalFx;
-            p.lastFy = totalFy;
-        }
+    // Hands the current mouse force to the simulation thread
+    private void sendMouse() {
+        Point pos = mousePos;
+        boolean attracting = isAttracting && !isOrbitalMode;
+        boolean repelling = isRepelling;
+        loop.submit(sim -> sim.setMouse(pos, attracting, repelling));
     }
 
-    private double[] addFieldForce(Particle p, double fieldX, double fieldY, boolean isAttracting, double totalFx,
-            double totalFy) {
-        double dx = fieldX - p.x;
-        double dy = fieldY - p.y;
-        double distSq = dx * dx + dy * dy + SOFT_RADIUS * SOFT_RADIUS;
-        double dist = Math.sqrt(distSq);
-
-        if (dist > 1) {
-            double force = G / distSq;
-            if (!isAttracting)
-                force = -force;
-
-            // Limit the maximum force
-            force = Math.min(Math.abs(force), MAX_FORCE) * Math.signum(force);
-
-            // Apply velocity-dependent dampening when close to field
-            double proximityFactor = Math.min(1.0, dist / 100.0);
-            force *= proximityFactor;
+    private void startSimulation() {
+        Thread thread = new Thread(loop, "gravity-simulation");
+        thread.setDaemon(true);
+        thread.start();
 
-            totalFx += (dx / dist) * force;
-            totalFy += (dy / dist) * force;
-        }
-        return new double[] { totalFx, totalFy };
+        // Painting only redraws the latest snapshot, so it runs at its own rate
+        javax.swing.Timer timer = new javax.swing.Timer(16, e -> repaint());
+        timer.start();
     }
 
     @Override
@@ -346,96 +319,127 @@ public class ParticleGravitySimulation extends JPanel {
         // Draw grid
         drawGrid(g2d);
 
+        Snapshot snapshot = loop.latest();
+        framesThisSecond++;
+        long now = System.nanoTime();
+        if (now - fpsWindowStart >= 1_000_000_000L) {
+            framesPerSecond = framesThisSecond;
+            framesThisSecond = 0;
+            fpsWindowStart = now;
+        }
+
         // Draw particles and their effects
-        for (Particle p : particles) {
-            // Draw trail
-            if (p.trail.size() > 1) {
+        ParticleStore ps = snapshot.particles;
+        for (int i = 0; i < ps.size; i++) {
+            double px = ps.x[i];
+            double py = ps.y[i];
+
+            // Draw trail as one polyline, oldest point first
+            int length = ps.trailLength[i];
+            if (length > 1) {
                 g2d.setColor(orbitTrailColor);
-                Point2D prev = null;
-                for (Point2D point : p.trail) {
-                    if (prev != null) {
-                        g2d.draw(new Line2D.Double(prev, point));
-                    }
-                    prev = point;
+                int base = i * ps.trailCapacity;
+                int slot = (ps.trailHead[i] - length + ps.trailCapacity) % ps.trailCapacity;
+                trailPath.reset();
+                trailPath.moveTo(ps.trailX[base + slot], ps.trailY[base + slot]);
+                for (int k = 1; k < length; k++) {
+                    slot = slot + 1 == ps.trailCapacity ? 0 : slot + 1;
+                    trailPath.lineTo(ps.trailX[base + slot], ps.trailY[base + slot]);
                 }
+                g2d.draw(trailPath);
             }
 
             // Draw force vector
             if (showForceVectors) {
-                drawVector(g2d, p.x, p.y, p.lastFx * 20, p.lastFy * 20, Color.RED);
+                drawVector(g2d, px, py, ps.fx[i] * 20, ps.fy[i] * 20, Color.RED);
             }
 
             // Draw velocity vector
             if (showVelocityVectors) {
-                drawVector(g2d, p.x, p.y, p.vx * 10, p.vy * 10, Color.GREEN);
+                drawVector(g2d, px, py, ps.vx[i] * 10, ps.vy[i] * 10, Color.GREEN);
             }
 
             // Draw particle glow
-            AlphaComposite composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f);
-            g2d.setComposite(composite);
-            g2d.setColor(new Color(0, 150, 255, 50));
-            g2d.fill(new Ellipse2D.Double(
-                    p.x - PARTICLE_RADIUS * 2,
-                    p.y - PARTICLE_RADIUS * 2,
-                    PARTICLE_RADIUS * 4,
-                    PARTICLE_RADIUS * 4));
+            double radius = Simulation.radius(ps.mass[i]);
+            g2d.setComposite(GLOW_COMPOSITE);
+            g2d.setColor(GLOW_COLOR);
+            ellipse.setFrame(
+                    px - radius * 2,
+                    py - radius * 2,
+                    radius * 4,
+                    radius * 4);
+            g2d.fill(ellipse);
 
             // Draw particle
             g2d.setComposite(AlphaComposite.SrcOver);
             g2d.setColor(particleColor);
-            g2d.fill(new Ellipse2D.Double(
-                    p.x - PARTICLE_RADIUS,
-                    p.y - PARTICLE_RADIUS,
-                    PARTICLE_RADIUS * 2,
-                    PARTICLE_RADIUS * 2));
+            ellipse.setFrame(
+                    px - radius,
+                    py - radius,
+                    radius * 2,
+                    radius * 2);
+            g2d.fill(ellipse);
+        }
+
+        // Highlight the particle under the cursor
+        if (snapshot.picked >= 0 && snapshot.picked < ps.size) {
+            int i = snapshot.picked;
+            double radius = Simulation.radius(ps.mass[i]) + 4;
+            g2d.setColor(Color.YELLOW);
+            g2d.setStroke(VECTOR_STROKE);
+            ellipse.setFrame(ps.x[i] - radius, ps.y[i] - radius, radius * 2, radius * 2);
+            g2d.draw(ellipse);
         }
 
         // Draw permanent fields
-        for (Field field : fields) {
-            Color fieldColor = field.isAttracting ? new Color(0, 255, 0, 50) : new Color(255, 0, 0, 50);
+        for (Field field : snapshot.fields) {
+            Color fieldColor = field.isAttracting ? ATTRACT_FIELD_COLOR : REPEL_FIELD_COLOR;
             g2d.setColor(fieldColor);
             int fieldRadius = 100;
-            g2d.fill(new Ellipse2D.Double(
+            ellipse.setFrame(
                     field.x - fieldRadius,
                     field.y - fieldRadius,
                     fieldRadius * 2,
-                    fieldRadius * 2));
+                    fieldRadius * 2);
+            g2d.fill(ellipse);
 
             // Draw field center
             g2d.setColor(field.isAttracting ? Color.GREEN : Color.RED);
-            g2d.fill(new Ellipse2D.Double(
+            ellipse.setFrame(
                     field.x - 5,
                     field.y - 5,
                     10,
-                    10));
+                    10);
+            g2d.fill(ellipse);
         }
 
         // Draw mouse influence area
         if ((isAttracting || isRepelling) && mousePos != null) {
-            Color fieldColor = isAttracting ? new Color(0, 255, 0, 50) : new Color(255, 0, 0, 50);
+            Color fieldColor = isAttracting ? ATTRACT_FIELD_COLOR : REPEL_FIELD_COLOR;
             g2d.setColor(fieldColor);
             int fieldRadius = 100;
-            g2d.fill(new Ellipse2D.Double(
+            ellipse.setFrame(
                     mousePos.x - fieldRadius,
                     mousePos.y - fieldRadius,
                     fieldRadius * 2,
-                    fieldRadius * 2));
+                    fieldRadius * 2);
+            g2d.fill(ellipse);
         }
 
         // Draw orbital mode drag line
         if (isOrbitalMode && mousePos != null && isAttracting) {
             g2d.setColor(Color.YELLOW);
-            g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g2d.setStroke(VECTOR_STROKE);
             g2d.drawLine(mousePos.x, mousePos.y,
                     (int) mousePos.getX(), (int) mousePos.getY());
         }
 
         // Draw instructions
-        drawInstructions(g2d);
+        drawInstructions(g2d, snapshot);
     }
 
     private void drawGrid(Graphics2D g2d) {
-        g2d.setColor(new Color(30, 30, 40));
+        g2d.setColor(GRID_COLOR);
         int gridSize = 50;
 
         for (int x = 0; x < getWidth(); x += gridSize) {
@@ -448,25 +452,28 @@ public class ParticleGravitySimulation extends JPanel {
 
     private void drawVector(Graphics2D g2d, double x, double y, double dx, double dy, Color color) {
         g2d.setColor(color);
-        g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2d.setStroke(VECTOR_STROKE);
 
         double angle = Math.atan2(dy, dx);
         int arrowSize = 8;
 
-        g2d.draw(new Line2D.Double(x, y, x + dx, y + dy));
-        g2d.draw(new Line2D.Double(
+        line.setLine(x, y, x + dx, y + dy);
+        g2d.draw(line);
+        line.setLine(
                 x + dx,
                 y + dy,
                 x + dx - arrowSize * Math.cos(angle - Math.PI / 6),
-                y + dy - arrowSize * Math.sin(angle - Math.PI / 6)));
-        g2d.draw(new Line2D.Double(
+                y + dy - arrowSize * Math.sin(angle - Math.PI / 6));
+        g2d.draw(line);
+        line.setLine(
                 x + dx,
                 y + dy,
                 x + dx - arrowSize * Math.cos(angle + Math.PI / 6),
-                y + dy - arrowSize * Math.sin(angle + Math.PI / 6)));
+                y + dy - arrowSize * Math.sin(angle + Math.PI / 6));
+        g2d.draw(line);
     }
 
-    private void drawInstructions(Graphics2D g2d) {
+    private void drawInstructions(Graphics2D g2d, Snapshot snapshot) {
         g2d.setColor(Color.WHITE);
         int y = 25;
         int lineHeight = 20;
@@ -491,23 +498,1271 @@ public class ParticleGravitySimulation extends JPanel {
         y += lineHeight;
         g2d.drawString("C: Clear All", 10, y);
         y += lineHeight;
-        g2d.drawString("Particles: " + particles.size(), 10, y);
+        g2d.drawString("Particles: " + snapshot.particles.size, 10, y);
         y += lineHeight;
         g2d.drawString("Mode: " + (isOrbitalMode ? "Orbital" : "Interactive"), 10, y);
+        y += lineHeight;
+        g2d.drawString(snapshot.useBarnesHut
+                ? String.format("Solver: Barnes-Hut (force error %.2f%%)", snapshot.forceError * 100)
+                : "Solver: All Pairs", 10, y);
+        y += lineHeight;
+        g2d.drawString("Force evaluations: " + snapshot.evaluations + " per step", 10, y);
+        y += lineHeight;
+        g2d.drawString("Physics: " + snapshot.stepsPerSecond + " steps/s, Render: " + framesPerSecond + " fps", 10, y);
+        ParticleStore ps = snapshot.particles;
+        if (snapshot.picked >= 0 && snapshot.picked < ps.size) {
+            int i = snapshot.picked;
+            y += lineHeight;
+            g2d.drawString(String.format("Picked: mass %.0f, speed %.2f", ps.mass[i], Math.hypot(ps.vx[i], ps.vy[i])),
+                    10, y);
+        }
     }
 
-    private static class Particle {
-        double x, y;
-        double vx, vy;
-        double lastFx, lastFy;
-        ArrayList<Point2D> trail;
+    // The physics, free of Swing: particles, fields, solver and integrator settings,
+    // and the mouse force. Only the thread that owns it may touch it; the window
+    // reaches it through SimulationLoop commands.
+    static class Simulation {
+        static final double G = 1000; // Gravity constant (adjusted for screen space)
+        static final double DAMPENING = 0.995; // Velocity dampening
+        static final int PARTICLE_RADIUS = 5;
+        static final double MAX_FORCE = 50.0; // Maximum force limit
+        static final double SOFT_RADIUS = 20.0; // Soft radius for force calculation
+        static final int TRAIL_POINTS = 50;
+        static final int FORCE_CHUNK = 256; // Particles per parallel force task
+        static final String[] INTEGRATORS = { "Semi-implicit Euler", "Leapfrog", "Yoshida (4th order)",
+                "Block Time Steps" };
+        static final String[] COLLISIONS = { "Off", "Bounce", "Merge" };
+        static final int COLLISIONS_OFF = 0, COLLISIONS_BOUNCE = 1, COLLISIONS_MERGE = 2;
+        static final double PICK_RADIUS = 15; // How close the cursor must be to pick a particle
+        static final double RESTITUTION = 0.8; // Same energy loss as the walls
+
+        final ParticleStore particles = new ParticleStore(TRAIL_POINTS);
+        final ArrayList<Field> fields = new ArrayList<>();
+        double width, height; // Walls
+        double timeScale = 1.0;
+        Integrator integrator = createIntegrator(0);
+        // Force backend: exact all-pairs (the reference) or Barnes-Hut with opening angle theta
+        boolean useBarnesHut = false;
+        double theta = 0.5;
+        private final QuadTree tree = new QuadTree(G * 0.1, SOFT_RADIUS, MAX_FORCE * 0.1, PARTICLE_RADIUS * 2);
+        private long stepCount = 0;
+        double forceError = Double.NaN; // Sampled Barnes-Hut error against all-pairs
+        long forceEvaluations = 0; // Per-particle force sums
+        long evaluationsLastStep = 0;
+        private boolean mouseAttracting, mouseRepelling;
+        private double mouseX, mouseY;
+        Random random = new Random(); // Seeded for batch runs
+        boolean recordTrails = true;  // Off for batch runs, which never draw
+        int collisions = COLLISIONS_OFF;
+        private final SpatialGrid grid = new SpatialGrid();
+        private boolean[] merged = new boolean[0];
+        int picked = -1; // Particle nearest the cursor, or -1
+        private boolean mouseKnown;
+        private final Forces forces = new Forces() {
+            @Override
+            public void all() {
+                computeForces(null, particles.size);
+            }
 
-        public Particle(double x, double y, double vx, double vy) {
-            this.x = x;
-            this.y = y;
-            this.vx = vx;
-            this.vy = vy;
-            this.trail = new ArrayList<>();
+            @Override
+            public void subset(int[] indices, int count) {
+                computeForces(indices, count);
+            }
+        };
+
+        Simulation(double width, double height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        // Drawn and collision radius; area grows with mass
+        static double radius(double mass) {
+            return PARTICLE_RADIUS * Math.sqrt(mass);
+        }
+
+        static Integrator createIntegrator(int index) {
+            switch (index) {
+                case 1:
+                    return new Leapfrog();
+                case 2:
+                    return new Yoshida4();
+                case 3:
+                    return new BlockLeapfrog();
+                default:
+                    return new SemiImplicitEuler(DAMPENING, MAX_FORCE);
+            }
+        }
+
+        void addParticle(double x, double y) {
+            particles.add(x, y,
+                    (random.nextDouble() - 0.5) * 2,
+                    (random.nextDouble() - 0.5) * 2);
+        }
+
+        void addRandomParticle() {
+            addParticle(random.nextDouble() * width, random.nextDouble() * height);
+        }
+
+        // The mouse pulls (or pushes) like a field while a button is held
+        void setMouse(Point pos, boolean attracting, boolean repelling) {
+            mouseAttracting = attracting && pos != null;
+            mouseRepelling = repelling && !attracting && pos != null;
+            mouseKnown = pos != null;
+            if (pos != null) {
+                mouseX = pos.x;
+                mouseY = pos.y;
+            }
+        }
+
+        void step() {
+            // Every 30 steps, measure the tree's error on a few particles against the exact sum
+            if (useBarnesHut && stepCount++ % 30 == 0) {
+                tree.build(particles);
+                forceError = tree.sampleError(theta, 32);
+            }
+
+            // Store previous positions for trails
+            ParticleStore ps = particles;
+            for (int i = 0; recordTrails && i < ps.size; i++) {
+                ps.pushTrail(i);
+            }
+
+            long evaluationsBefore = forceEvaluations;
+            integrator.step(ps, timeScale, forces);
+            evaluationsLastStep = forceEvaluations - evaluationsBefore;
+
+            // Bounce off walls with energy loss
+            for (int i = 0; i < ps.size; i++) {
+                if (ps.x[i] < 0) {
+                    ps.x[i] = 0;
+                    ps.vx[i] *= -0.8;
+                }
+                if (ps.x[i] > width) {
+                    ps.x[i] = width;
+                    ps.vx[i] *= -0.8;
+                }
+                if (ps.y[i] < 0) {
+                    ps.y[i] = 0;
+                    ps.vy[i] *= -0.8;
+                }
+                if (ps.y[i] > height) {
+                    ps.y[i] = height;
+                    ps.vy[i] *= -0.8;
+                }
+            }
+
+            // Short-range work goes through the grid instead of scanning all pairs
+            double maxMass = 1;
+            for (int i = 0; i < ps.size; i++) {
+                maxMass = Math.max(maxMass, ps.mass[i]);
+            }
+            double cellSize = Math.max(PICK_RADIUS, 2 * radius(maxMass));
+            grid.update(ps, cellSize);
+            if (collisions != COLLISIONS_OFF && collide()) {
+                // Merges swap-removed particles, so the grid's indices are stale
+                grid.update(ps, cellSize);
+            }
+            picked = mouseKnown ? grid.nearest(ps, mouseX, mouseY, PICK_RADIUS) : -1;
+        }
+
+        // Resolves touching pairs found through the grid. Bounce exchanges momentum
+        // along the line of centres and pushes the pair apart; Merge replaces the pair
+        // with one particle of their summed mass and momentum at their centre of mass.
+        // Returns whether any particles merged (and so were removed).
+        private boolean collide() {
+            ParticleStore ps = particles;
+            if (merged.length < ps.size) {
+                merged = new boolean[ps.x.length];
+            }
+            Arrays.fill(merged, 0, ps.size, false);
+            boolean anyMerged = false;
+
+            for (int i = 0; i < ps.size; i++) {
+                if (merged[i])
+                    continue;
+                int found = grid.near(ps.x[i], ps.y[i]);
+                for (int k = 0; k < found; k++) {
+                    int j = grid.found[k];
+                    if (j <= i || merged[j])
+                        continue;
+                    double dx = ps.x[j] - ps.x[i];
+                    double dy = ps.y[j] - ps.y[i];
+                    double distSq = dx * dx + dy * dy;
+                    double touch = radius(ps.mass[i]) + radius(ps.mass[j]);
+                    if (distSq >= touch * touch)
+                        continue;
+
+                    double mi = ps.mass[i], mj = ps.mass[j], m = mi + mj;
+                    if (collisions == COLLISIONS_MERGE) {
+                        ps.x[i] = (ps.x[i] * mi + ps.x[j] * mj) / m;
+                        ps.y[i] = (ps.y[i] * mi + ps.y[j] * mj) / m;
+                        ps.vx[i] = (ps.vx[i] * mi + ps.vx[j] * mj) / m;
+                        ps.vy[i] = (ps.vy[i] * mi + ps.vy[j] * mj) / m;
+                        ps.mass[i] = m;
+                        merged[j] = true;
+                        anyMerged = true;
+                    } else if (distSq > 0) {
+                        double dist = Math.sqrt(distSq);
+                        double nx = dx / dist, ny = dy / dist;
+                        double approach = (ps.vx[j] - ps.vx[i]) * nx + (ps.vy[j] - ps.vy[i]) * ny;
+                        if (approach < 0) {
+                            double impulse = -(1 + RESTITUTION) * approach / (1 / mi + 1 / mj);
+                            ps.vx[i] -= impulse / mi * nx;
+                            ps.vy[i] -= impulse / mi * ny;
+                            ps.vx[j] += impulse / mj * nx;
+                            ps.vy[j] += impulse / mj * ny;
+                        }
+                        double overlap = touch - dist;
+                        ps.x[i] -= nx * overlap * mj / m;
+                        ps.y[i] -= ny * overlap * mj / m;
+                        ps.x[j] += nx * overlap * mi / m;
+                        ps.y[j] += ny * overlap * mi / m;
+                    }
+                }
+            }
+
+            // Remove absorbed particles from the end so pending indices stay valid
+            if (anyMerged) {
+                for (int i = ps.size - 1; i >= 0; i--) {
+                    if (merged[i]) {
+                        ps.remove(i);
+                    }
+                }
+            }
+            return anyMerged;
+        }
+
+        // Refreshes fx, fy from the current positions for the first count particles listed in
+        // indices, or for particles 0..count-1 when indices is null, in parallel chunks. Each
+        // particle's sum runs in a fixed order, so results do not depend on thread count.
+        private void computeForces(int[] indices, int count) {
+            if (useBarnesHut) {
+                tree.build(particles);
+            }
+            forceEvaluations += count;
+            int chunks = (count + FORCE_CHUNK - 1) / FORCE_CHUNK;
+            IntStream.range(0, chunks).parallel()
+                    .forEach(c -> computeForces(indices, c * FORCE_CHUNK, Math.min(count, (c + 1) * FORCE_CHUNK)));
+        }
+
+        // Writes the total force on listed particles [from, to) into fx, fy. Positions are only read.
+        private void computeForces(int[] indices, int from, int to) {
+            ParticleStore ps = particles;
+            double[] xs = ps.x, ys = ps.y, ms = ps.mass;
+            double[] out = new double[3];
+            int[] stack = useBarnesHut ? tree.newStack() : null;
+            boolean mouseActive = mouseAttracting || mouseRepelling;
+            double mouseX = this.mouseX, mouseY = this.mouseY;
+
+            for (int k = from; k < to; k++) {
+                int i = indices == null ? k : indices[k];
+                double px = xs[i];
+                double py = ys[i];
+                double totalFx = 0, totalFy = 0, tidal = 0;
+
+                // Mouse interaction
+                if (mouseActive) {
+                    addFieldForce(px, py, mouseX, mouseY, mouseAttracting, totalFx, totalFy, out);
+                    totalFx = out[0];
+                    totalFy = out[1];
+                    tidal += out[2];
+                }
+
+                // Permanent fields interaction
+                for (int f = 0; f < fields.size(); f++) {
+                    Field field = fields.get(f);
+                    addFieldForce(px, py, field.x, field.y, field.isAttracting, totalFx, totalFy, out);
+                    totalFx = out[0];
+                    totalFy = out[1];
+                    tidal += out[2];
+                }
+
+                // Particle interactions
+                if (useBarnesHut) {
+                    tree.accelerate(i, px, py, theta, out, stack);
+                    totalFx += out[0];
+                    totalFy += out[1];
+                    tidal += out[2];
+                } else {
+                    for (int j = 0; j < ps.size; j++) {
+                        if (j != i) {
+                            double dx = xs[j] - px;
+                            double dy = ys[j] - py;
+                            double distSq = dx * dx + dy * dy + SOFT_RADIUS * SOFT_RADIUS;
+                            double dist = Math.sqrt(distSq);
+
+                            if (dist > PARTICLE_RADIUS * 2) {
+                                double force = (G * 0.1) * ms[j] / distSq;
+
+                                // Limit the maximum force
+                                force = Math.min(Math.abs(force), MAX_FORCE * 0.1 * ms[j]) * Math.signum(force);
+
+                                totalFx += (dx / dist) * force;
+                                totalFy += (dy / dist) * force;
+                                tidal += force / dist;
+                            }
+                        }
+                    }
+                }
+
+                // Stored for integration and for drawing
+                ps.fx[i] = totalFx;
+                ps.fy[i] = totalFy;
+                ps.tidal[i] = tidal;
+            }
+        }
+
+        // Adds a field's force to (totalFx, totalFy) and writes the sum to out[0], out[1],
+        // and the field's own tidal term (force / distance, about G M / r^3) to out[2]
+        private void addFieldForce(double px, double py, double fieldX, double fieldY, boolean isAttracting,
+                double totalFx, double totalFy, double[] out) {
+            double dx = fieldX - px;
+            double dy = fieldY - py;
+            double distSq = dx * dx + dy * dy + SOFT_RADIUS * SOFT_RADIUS;
+            double dist = Math.sqrt(distSq);
+            double tidal = 0;
+
+            if (dist > 1) {
+                double force = G / distSq;
+                if (!isAttracting)
+                    force = -force;
+
+                // Limit the maximum force
+                force = Math.min(Math.abs(force), MAX_FORCE) * Math.signum(force);
+
+                // Apply velocity-dependent dampening when close to field
+                double proximityFactor = Math.min(1.0, dist / 100.0);
+                force *= proximityFactor;
+
+                totalFx += (dx / dist) * force;
+                totalFy += (dy / dist) * force;
+                tidal = Math.abs(force) / dist;
+            }
+            out[0] = totalFx;
+            out[1] = totalFy;
+            out[2] = tidal;
+        }
+    }
+
+    // What the painter draws: a copy of the particles and fields after one step.
+    // A snapshot is never written while the painter holds it (see SimulationLoop).
+    private static class Snapshot {
+        final ParticleStore particles = new ParticleStore(Simulation.TRAIL_POINTS);
+        final ArrayList<Field> fields = new ArrayList<>();
+        boolean useBarnesHut;
+        double forceError;
+        long evaluations;
+        int stepsPerSecond;
+        int picked;
+        boolean fresh; // Published and not yet taken by the painter
+
+        void copyFrom(Simulation sim, int stepsPerSecond) {
+            particles.copyFrom(sim.particles);
+            fields.clear();
+            fields.addAll(sim.fields); // Fields are never modified once placed
+            useBarnesHut = sim.useBarnesHut;
+            forceError = sim.forceError;
+            evaluations = sim.evaluationsLastStep;
+            picked = sim.picked;
+            this.stepsPerSecond = stepsPerSecond;
+        }
+    }
+
+    // Runs the simulation at a fixed 60 steps per second on its own thread, so heavy
+    // physics no longer stalls input or painting, and simulated time no longer
+    // depends on the frame rate. Input arrives as commands applied between steps.
+    // Snapshots leave through three buffers: one the loop writes, one the painter
+    // reads, and a middle slot they swap atomically. Neither side ever waits, and
+    // the loop only copies a new snapshot once the painter has taken the last one.
+    private static class SimulationLoop implements Runnable {
+        private static final long STEP_NANOS = 1_000_000_000L / 60;
+        private static final long MAX_LAG_NANOS = 250_000_000L; // Further behind, drop the backlog
+
+        private final Simulation simulation;
+        private final ConcurrentLinkedQueue<Consumer<Simulation>> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Snapshot> middle = new AtomicReference<>(new Snapshot());
+        private Snapshot writing = new Snapshot();
+        private Snapshot reading = new Snapshot(); // Owned by the painting thread
+
+        SimulationLoop(Simulation simulation) {
+            this.simulation = simulation;
+        }
+
+        void submit(Consumer<Simulation> command) {
+            commands.add(command);
+        }
+
+        // The newest published snapshot; call from the painting thread only
+        Snapshot latest() {
+            if (middle.get().fresh) {
+                reading.fresh = false;
+                reading = middle.getAndSet(reading);
+            }
+            return reading;
+        }
+
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            long windowStart = next;
+            int steps = 0, stepsPerSecond = 0;
+
+            while (true) {
+                Consumer<Simulation> command;
+                while ((command = commands.poll()) != null) {
+                    command.accept(simulation);
+                }
+
+                long now = System.nanoTime();
+                if (now < next) {
+                    LockSupport.parkNanos(next - now);
+                    continue;
+                }
+                if (now - next > MAX_LAG_NANOS) {
+                    next = now;
+                }
+                next += STEP_NANOS;
+
+                simulation.step();
+                steps++;
+                if (now - windowStart >= 1_000_000_000L) {
+                    stepsPerSecond = steps;
+                    steps = 0;
+                    windowStart = now;
+                }
+
+                if (!middle.get().fresh) {
+                    writing.copyFrom(simulation, stepsPerSecond);
+                    writing.fresh = true;
+                    writing = middle.getAndSet(writing);
+                }
+            }
+        }
+    }
+
+    // Runs the physics with no window (`--batch`) and streams snapshots to a binary
+    // file, for parameter sweeps on headless machines. Runs are reproducible: the
+    // seed fixes the initial particles and the force phase is deterministic.
+    //
+    // File layout, little-endian: a HEADER_SIZE header (magic, version, particle
+    // count, steps, snapshot interval, seed, world width and height, time scale),
+    // then one record per snapshot: step (int), particle count (int), and x, y, vx,
+    // vy, mass per particle as floats. The count drops when particles merge.
+    private static final class BatchRunner {
+        static final int MAGIC = 0x4E42534E; // "NBSN"
+        private static final int VERSION = 2;
+        private static final int HEADER_SIZE = 64;
+
+        static final String USAGE = String.join("\n",
+                "Usage: java ParticleGravitySimulation --batch --output FILE [options]",
+                "  --particles N       Particle count (default 1000)",
+                "  --steps N           Steps to run (default 1000)",
+                "  --seed S            Seed for the initial particles (default 1)",
+                "  --size WxH          World size; particles bounce off its walls (default 1200x800)",
+                "  --time-scale T      Length of one step (default 1.0)",
+                "  --integrator NAME   euler | leapfrog | yoshida | block (default euler)",
+                "  --solver NAME       exact | barnes-hut (default exact)",
+                "  --theta T           Barnes-Hut opening angle (default 0.5)",
+                "  --fields LIST       Fixed fields as X,Y,+ (attracting) or X,Y,- (repelling),",
+                "                      separated by ';' (default none)",
+                "  --collisions MODE   off | bounce | merge (default off)",
+                "  --snapshot-every N  Steps between snapshots, step 0 included (default 10)");
+
+        private static final String[] INTEGRATOR_NAMES = { "euler", "leapfrog", "yoshida", "block" };
+
+        static void run(String[] args) throws IOException {
+            Map<String, String> options = parseOptions(args);
+            String output = options.get("output");
+            if (output == null)
+                throw new IllegalArgumentException("--output is required");
+            int count = Integer.parseInt(options.getOrDefault("particles", "1000"));
+            int steps = Integer.parseInt(options.getOrDefault("steps", "1000"));
+            long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+            String[] size = options.getOrDefault("size", "1200x800").split("x");
+            int every = Integer.parseInt(options.getOrDefault("snapshot-every", "10"));
+            if (count < 0 || steps < 0 || every < 1 || size.length != 2)
+                throw new IllegalArgumentException("Invalid --particles, --steps, --size or --snapshot-every");
+
+            Simulation sim = new Simulation(Double.parseDouble(size[0]), Double.parseDouble(size[1]));
+            sim.timeScale = Double.parseDouble(options.getOrDefault("time-scale", "1.0"));
+            int integrator = Arrays.asList(INTEGRATOR_NAMES).indexOf(options.getOrDefault("integrator", "euler"));
+            if (integrator < 0)
+                throw new IllegalArgumentException("Unknown integrator: " + options.get("integrator"));
+            sim.integrator = Simulation.createIntegrator(integrator);
+            String solver = options.getOrDefault("solver", "exact");
+            if (!solver.equals("exact") && !solver.equals("barnes-hut"))
+                throw new IllegalArgumentException("Unknown solver: " + solver);
+            sim.useBarnesHut = solver.equals("barnes-hut");
+            sim.theta = Double.parseDouble(options.getOrDefault("theta", "0.5"));
+            String collisions = options.getOrDefault("collisions", "off");
+            sim.collisions = Arrays.asList("off", "bounce", "merge").indexOf(collisions);
+            if (sim.collisions < 0)
+                throw new IllegalArgumentException("Unknown collision mode: " + collisions);
+            for (String field : options.getOrDefault("fields", "").split(";")) {
+                if (field.isEmpty())
+                    continue;
+                String[] parts = field.split(",");
+                if (parts.length != 3 || !(parts[2].equals("+") || parts[2].equals("-")))
+                    throw new IllegalArgumentException("Expected a field as X,Y,+ or X,Y,-, got: " + field);
+                sim.fields.add(new Field(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        parts[2].equals("+")));
+            }
+            sim.random = new Random(seed);
+            sim.recordTrails = false;
+            for (int i = 0; i < count; i++) {
+                sim.addRandomParticle();
+            }
+
+            try (FileChannel channel = FileChannel.open(Paths.get(output), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(steps).putInt(every).putLong(seed)
+                        .putDouble(sim.width).putDouble(sim.height).putDouble(sim.timeScale);
+                header.position(HEADER_SIZE).flip();
+                writeFully(channel, header);
+
+                ByteBuffer record = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                long start = System.nanoTime();
+                for (int step = 0; step <= steps; step++) {
+                    if (step > 0) {
+                        sim.step();
+                    }
+                    if (step % every == 0 || step == steps) {
+                        int n = sim.particles.size;
+                        if (record.capacity() < 8 + 20 * n) {
+                            record = ByteBuffer.allocate(8 + 20 * n).order(ByteOrder.LITTLE_ENDIAN);
+                        }
+                        record.clear();
+                        record.putInt(step).putInt(n);
+                        ParticleStore ps = sim.particles;
+                        for (int i = 0; i < n; i++) {
+                            record.putFloat((float) ps.x[i]).putFloat((float) ps.y[i])
+                                    .putFloat((float) ps.vx[i]).putFloat((float) ps.vy[i])
+                                    .putFloat((float) ps.mass[i]);
+                        }
+                        record.flip();
+                        writeFully(channel, record);
+                        System.err.printf("\rStep %d/%d", step, steps);
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.err.printf("%nRan %d steps of %d particles in %.1f s (%.1f steps/s, %.3g particle-steps/s)%n",
+                        steps, count, seconds, steps / seconds, (double) steps * count / seconds);
+            }
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        static Map<String, String> parseOptions(String[] args) {
+            Map<String, String> options = new HashMap<>();
+            for (int i = 1; i < args.length; i++) {
+                if (!args[i].startsWith("--") || i + 1 >= args.length)
+                    throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+                options.put(args[i].substring(2), args[++i]);
+            }
+            return options;
+        }
+    }
+
+    // Structure-of-arrays particle store. Each attribute lives in its own primitive
+    // array so the force, integration and drawing loops stream through contiguous
+    // memory instead of chasing one object per particle. Trails are fixed-size ring
+    // buffers packed into two flat arrays, trailCapacity slots per particle.
+    static class ParticleStore {
+        int size;
+        double[] x, y;
+        double[] vx, vy;
+        double[] fx, fy; // Last applied force, kept for drawing
+        double[] tidal;  // Sum of G m / r^3 over other particles and fields, the squared local orbital frequency
+        double[] mass;   // 1 for a fresh particle; merges add up
+        final int trailCapacity;
+        float[] trailX, trailY;
+        int[] trailHead;   // Slot the next trail point is written to
+        int[] trailLength; // Valid points, at most trailCapacity
+        int resets;        // Bumped when particles are cleared or removed, so per-particle state elsewhere can reset
+
+        ParticleStore(int trailCapacity) {
+            this.trailCapacity = trailCapacity;
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            x = Arrays.copyOf(x == null ? new double[0] : x, capacity);
+            y = Arrays.copyOf(y == null ? new double[0] : y, capacity);
+            vx = Arrays.copyOf(vx == null ? new double[0] : vx, capacity);
+            vy = Arrays.copyOf(vy == null ? new double[0] : vy, capacity);
+            fx = Arrays.copyOf(fx == null ? new double[0] : fx, capacity);
+            fy = Arrays.copyOf(fy == null ? new double[0] : fy, capacity);
+            tidal = Arrays.copyOf(tidal == null ? new double[0] : tidal, capacity);
+            mass = Arrays.copyOf(mass == null ? new double[0] : mass, capacity);
+            trailX = Arrays.copyOf(trailX == null ? new float[0] : trailX, capacity * trailCapacity);
+            trailY = Arrays.copyOf(trailY == null ? new float[0] : trailY, capacity * trailCapacity);
+            trailHead = Arrays.copyOf(trailHead == null ? new int[0] : trailHead, capacity);
+            trailLength = Arrays.copyOf(trailLength == null ? new int[0] : trailLength, capacity);
+        }
+
+        int add(double px, double py, double pvx, double pvy) {
+            if (size == x.length) {
+                allocate(size * 2);
+            }
+            int i = size++;
+            x[i] = px;
+            y[i] = py;
+            vx[i] = pvx;
+            vy[i] = pvy;
+            fx[i] = 0;
+            fy[i] = 0;
+            tidal[i] = 0;
+            mass[i] = 1;
+            trailHead[i] = 0;
+            trailLength[i] = 0;
+            return i;
+        }
+
+        void clear() {
+            size = 0;
+            resets++;
+        }
+
+        // Removes particle i by moving the last particle into its place
+        void remove(int i) {
+            int last = --size;
+            if (i != last) {
+                x[i] = x[last];
+                y[i] = y[last];
+                vx[i] = vx[last];
+                vy[i] = vy[last];
+                fx[i] = fx[last];
+                fy[i] = fy[last];
+                tidal[i] = tidal[last];
+                mass[i] = mass[last];
+                System.arraycopy(trailX, last * trailCapacity, trailX, i * trailCapacity, trailCapacity);
+                System.arraycopy(trailY, last * trailCapacity, trailY, i * trailCapacity, trailCapacity);
+                trailHead[i] = trailHead[last];
+                trailLength[i] = trailLength[last];
+            }
+            resets++;
+        }
+
+        // Makes this store a copy of other's particles and trails
+        void copyFrom(ParticleStore other) {
+            if (x.length < other.size) {
+                allocate(other.x.length);
+            }
+            size = other.size;
+            System.arraycopy(other.x, 0, x, 0, size);
+            System.arraycopy(other.y, 0, y, 0, size);
+            System.arraycopy(other.vx, 0, vx, 0, size);
+            System.arraycopy(other.vy, 0, vy, 0, size);
+            System.arraycopy(other.fx, 0, fx, 0, size);
+            System.arraycopy(other.fy, 0, fy, 0, size);
+            System.arraycopy(other.mass, 0, mass, 0, size);
+            System.arraycopy(other.trailX, 0, trailX, 0, size * trailCapacity);
+            System.arraycopy(other.trailY, 0, trailY, 0, size * trailCapacity);
+            System.arraycopy(other.trailHead, 0, trailHead, 0, size);
+            System.arraycopy(other.trailLength, 0, trailLength, 0, size);
+        }
+
+        // Moves every particle along its velocity for dt
+        void drift(double dt) {
+            for (int i = 0; i < size; i++) {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+        }
+
+        // Changes every velocity by the stored force for dt
+        void kick(double dt) {
+            for (int i = 0; i < size; i++) {
+                vx[i] += fx[i] * dt;
+                vy[i] += fy[i] * dt;
+            }
+        }
+
+        // Appends the current position to particle i's trail, overwriting the oldest point when full
+        void pushTrail(int i) {
+            int slot = i * trailCapacity + trailHead[i];
+            trailX[slot] = (float) x[i];
+            trailY[slot] = (float) y[i];
+            trailHead[i] = (trailHead[i] + 1) % trailCapacity;
+            if (trailLength[i] < trailCapacity) {
+                trailLength[i]++;
+            }
+        }
+    }
+
+    // Force evaluation handed to integrators; refreshes fx, fy from the current positions
+    private interface Forces {
+        void all();
+
+        void subset(int[] indices, int count);
+    }
+
+    // Advances every particle by dt. Forces act as accelerations (unit mass).
+    private interface Integrator {
+        void step(ParticleStore ps, double dt, Forces forces);
+    }
+
+    // The original scheme: velocity from the current forces with speed-dependent
+    // dampening and a speed clamp, then position. First order and dissipative.
+    private static class SemiImplicitEuler implements Integrator {
+        private final double dampening;
+        private final double maxSpeed;
+
+        SemiImplicitEuler(double dampening, double maxSpeed) {
+            this.dampening = dampening;
+            this.maxSpeed = maxSpeed;
+        }
+
+        @Override
+        public void step(ParticleStore ps, double dt, Forces forces) {
+            forces.all();
+            for (int i = 0; i < ps.size; i++) {
+                double vx = ps.vx[i];
+                double vy = ps.vy[i];
+
+                // Apply velocity-dependent dampening
+                double speed = Math.sqrt(vx * vx + vy * vy);
+                double dampFactor = Math.pow(dampening, 1.0 + speed * 0.01);
+
+                vx += ps.fx[i] * dt;
+                vy += ps.fy[i] * dt;
+                vx *= dampFactor;
+                vy *= dampFactor;
+
+                // Additional speed limit
+                speed = Math.sqrt(vx * vx + vy * vy);
+                if (speed > maxSpeed) {
+                    double scale = maxSpeed / speed;
+                    vx *= scale;
+                    vy *= scale;
+                }
+
+                ps.vx[i] = vx;
+                ps.vy[i] = vy;
+            }
+            ps.drift(dt);
+        }
+    }
+
+    // Drift-kick-drift leapfrog: second order and symplectic, so energy stays bounded
+    // at larger steps. One force evaluation per step, at the midpoint positions.
+    private static class Leapfrog implements Integrator {
+        @Override
+        public void step(ParticleStore ps, double dt, Forces forces) {
+            ps.drift(dt / 2);
+            forces.all();
+            ps.kick(dt);
+            ps.drift(dt / 2);
+        }
+    }
+
+    // Yoshida's fourth-order composition of three leapfrog steps, the middle one
+    // backwards in time. Three force evaluations per step.
+    private static class Yoshida4 implements Integrator {
+        private static final double W1 = 1 / (2 - Math.cbrt(2));
+        private static final double W0 = -Math.cbrt(2) * W1;
+        private static final double[] DRIFT = { W1 / 2, (W0 + W1) / 2, (W0 + W1) / 2, W1 / 2 };
+        private static final double[] KICK = { W1, W0, W1 };
+
+        @Override
+        public void step(ParticleStore ps, double dt, Forces forces) {
+            for (int k = 0; k < KICK.length; k++) {
+                ps.drift(DRIFT[k] * dt);
+                forces.all();
+                ps.kick(KICK[k] * dt);
+            }
+            ps.drift(DRIFT[3] * dt);
+        }
+    }
+
+    // Kick-drift-kick leapfrog with hierarchical block time steps. Each particle steps
+    // with dt / 2^level, the level chosen from its local orbital frequency (the tidal
+    // sum over particles, fields and the cursor, which unlike the acceleration stays
+    // large at the centre of a softened cluster), and all steps nest in power-of-two
+    // blocks. Every sub-step drifts all particles (cheap) but only the particles
+    // whose own step ends there get a force evaluation and a kick, so quiet
+    // particles cost one force per frame and only close encounters pay for fine
+    // steps. Velocities are synchronised again at the end of each frame.
+    private static class BlockLeapfrog implements Integrator {
+        private static final int MAX_LEVEL = 10; // Finest step is dt / 1024
+        private static final double ETA = 0.05;  // Step as a fraction of 1 / frequency
+
+        private int[] level = new int[0];
+        private int[] active = new int[0];
+        private final int[] levelCounts = new int[MAX_LEVEL + 1];
+        private int known = 0; // Particles with forces and a level assigned
+        private int resets = 0;
+
+        @Override
+        public void step(ParticleStore ps, double dt, Forces forces) {
+            int n = ps.size;
+            if (level.length < n) {
+                level = Arrays.copyOf(level, n * 2);
+                active = new int[n * 2];
+            }
+
+            // New particles (or a cleared store) need forces before their first step
+            if (resets != ps.resets) {
+                resets = ps.resets;
+                known = 0;
+            }
+            if (known < n) {
+                int count = 0;
+                for (int i = known; i < n; i++) {
+                    active[count++] = i;
+                }
+                forces.subset(active, count);
+                known = n;
+            }
+
+            int ticks = 1 << MAX_LEVEL;
+            double h = dt / ticks;
+
+            // Opening half-kick; all particles start the frame in step
+            Arrays.fill(levelCounts, 0);
+            for (int i = 0; i < n; i++) {
+                level[i] = chooseLevel(ps, i, dt, 0, ticks);
+                levelCounts[level[i]]++;
+                kick(ps, i, dt / (1 << level[i]) / 2);
+            }
+
+            int t = 0;
+            while (t < ticks) {
+                // Advance to the next point where the finest occupied level ends a step
+                int deepest = MAX_LEVEL;
+                while (deepest > 0 && levelCounts[deepest] == 0) {
+                    deepest--;
+                }
+                int stride = ticks >> deepest;
+                ps.drift(stride * h);
+                t += stride;
+
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    if (t % (ticks >> level[i]) == 0) {
+                        active[count++] = i;
+                    }
+                }
+                forces.subset(active, count);
+
+                // Closing half-kick, then open the next step at a possibly new level
+                for (int k = 0; k < count; k++) {
+                    int i = active[k];
+                    kick(ps, i, dt / (1 << level[i]) / 2);
+                    if (t < ticks) {
+                        levelCounts[level[i]]--;
+                        level[i] = chooseLevel(ps, i, dt, t, ticks);
+                        levelCounts[level[i]]++;
+                        kick(ps, i, dt / (1 << level[i]) / 2);
+                    }
+                }
+            }
+        }
+
+        // Finest level needed for accuracy, coarsened only as far as tick t allows:
+        // a step of ticks >> level may only start on a multiple of its own length
+        private int chooseLevel(ParticleStore ps, int i, double dt, int t, int ticks) {
+            double wanted = ps.tidal[i] > 0 ? ETA / Math.sqrt(ps.tidal[i]) : dt;
+            int lvl = 0;
+            while (lvl < MAX_LEVEL && dt / (1 << lvl) > wanted) {
+                lvl++;
+            }
+            while (t % (ticks >> lvl) != 0) {
+                lvl++;
+            }
+            return lvl;
+        }
+
+        private static void kick(ParticleStore ps, int i, double dt) {
+            ps.vx[i] += ps.fx[i] * dt;
+            ps.vy[i] += ps.fy[i] * dt;
+        }
+    }
+
+    // Uniform grid over the plane for short-range queries, hashed into a table of
+    // cell lists so it needs no bounds. Every particle sits in one doubly linked
+    // list; update() only relinks the particles whose cell changed since the last
+    // step, and rebuilds from scratch only when particles were removed or reordered,
+    // the table or link arrays need to grow, or the cell size has to change. Cells
+    // shrink again once the required size falls well below the current one, so a
+    // heavy body that merged away does not leave oversized cells behind. Anything
+    // within one cell size of a point lies in the 3x3 cells around it.
+    static final class SpatialGrid {
+        private static final double SHRINK_RATIO = 4; // Rebuild smaller once cells are this many times too big
+
+        private double cellSize = 0;
+        private int mask;
+        private int[] head = new int[0]; // First particle per table slot, -1 if empty
+        private int[] next = new int[0];
+        private int[] prev = new int[0];
+        private long[] cellOf = new long[0]; // Cell key of each linked particle
+        private int linked = 0;
+        private int resets = -1;
+        int[] found = new int[64]; // Results of the last near() query
+
+        void update(ParticleStore ps, double minCellSize) {
+            int n = ps.size;
+            if (ps.resets != resets || minCellSize > cellSize || minCellSize * SHRINK_RATIO < cellSize
+                    || n * 2 > head.length || n > next.length) {
+                rebuild(ps, minCellSize);
+                return;
+            }
+            for (int i = 0; i < linked; i++) {
+                long key = key(ps.x[i], ps.y[i]);
+                if (key != cellOf[i]) {
+                    unlink(i);
+                    link(i, key);
+                }
+            }
+            for (int i = linked; i < n; i++) {
+                link(i, key(ps.x[i], ps.y[i]));
+            }
+            linked = n;
+        }
+
+        private void rebuild(ParticleStore ps, double minCellSize) {
+            int n = ps.size;
+            resets = ps.resets;
+            cellSize = minCellSize;
+            if (n * 2 > head.length) {
+                int capacity = Integer.highestOneBit(Math.max(64, n * 4));
+                head = new int[capacity];
+                mask = capacity - 1;
+            }
+            if (next.length < n) {
+                int capacity = Math.max(n, ps.x.length);
+                next = new int[capacity];
+                prev = new int[capacity];
+                cellOf = new long[capacity];
+            }
+            Arrays.fill(head, -1);
+            for (int i = 0; i < n; i++) {
+                link(i, key(ps.x[i], ps.y[i]));
+            }
+            linked = n;
+        }
+
+        private long key(double x, double y) {
+            long cx = (long) Math.floor(x / cellSize);
+            long cy = (long) Math.floor(y / cellSize);
+            return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+
+        private void link(int i, long key) {
+            int s = slot(key);
+            cellOf[i] = key;
+            prev[i] = -1;
+            next[i] = head[s];
+            if (head[s] >= 0) {
+                prev[head[s]] = i;
+            }
+            head[s] = i;
+        }
+
+        private void unlink(int i) {
+            if (prev[i] >= 0) {
+                next[prev[i]] = next[i];
+            } else {
+                head[slot(cellOf[i])] = next[i];
+            }
+            if (next[i] >= 0) {
+                prev[next[i]] = prev[i];
+            }
+        }
+
+        // Collects the particles in the 3x3 cells around (x, y) into found; returns how many
+        int near(double x, double y) {
+            long cx = (long) Math.floor(x / cellSize);
+            long cy = (long) Math.floor(y / cellSize);
+            int count = 0;
+            for (long gy = cy - 1; gy <= cy + 1; gy++) {
+                for (long gx = cx - 1; gx <= cx + 1; gx++) {
+                    long key = (gx << 32) ^ (gy & 0xFFFFFFFFL);
+                    // Other cells can share the slot; keep only this one's particles
+                    for (int i = head[slot(key)]; i >= 0; i = next[i]) {
+                        if (cellOf[i] == key) {
+                            if (count == found.length) {
+                                found = Arrays.copyOf(found, count * 2);
+                            }
+                            found[count++] = i;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        // The particle closest to (x, y) within radius (at most the cell size), or -1
+        int nearest(ParticleStore ps, double x, double y, double radius) {
+            int best = -1;
+            double bestSq = radius * radius;
+            int count = near(x, y);
+            for (int k = 0; k < count; k++) {
+                int i = found[k];
+                double dx = ps.x[i] - x, dy = ps.y[i] - y;
+                double distSq = dx * dx + dy * dy;
+                if (distSq <= bestSq) {
+                    best = i;
+                    bestSq = distSq;
+                }
+            }
+            return best;
+        }
+    }
+
+    // Barnes-Hut quadtree over a snapshot of the particle positions. Every node keeps
+    // the total mass and centre of mass of the particles below it, and a node
+    // that appears smaller than the opening angle theta from a particle acts on it as
+    // one body, so a force costs O(log n) instead of O(n). Leaves hold up to
+    // LEAF_CAPACITY particles, which interact pairwise exactly as in the all-pairs loop.
+    private static class QuadTree {
+        private static final int LEAF_CAPACITY = 8;
+        private static final int MAX_DEPTH = 40; // Coincident particles stop splitting here
+
+        private final double strength; // Force numerator per unit of source mass
+        private final double softSq;
+        private final double maxPairForce;
+        private final double minDistance;
+
+        // Position snapshot and particle indices grouped by node
+        private double[] xs = new double[0];
+        private double[] ys = new double[0];
+        private double[] ms = new double[0];
+        private int[] order = new int[0];
+        private int[] rank = new int[0]; // Position of each particle in order
+        private int count;
+
+        // Nodes as parallel arrays; children holds four slots per node, -1 when empty
+        private int nodeCount;
+        private int[] start = new int[0];
+        private int[] end = new int[0];
+        private int[] children = new int[0];
+        private double[] size = new double[0];
+        private double[] mass = new double[0];
+        private double[] comX = new double[0];
+        private double[] comY = new double[0];
+        private final Random random = new Random();
+
+        QuadTree(double strength, double softRadius, double maxPairForce, double minDistance) {
+            this.strength = strength;
+            this.softSq = softRadius * softRadius;
+            this.maxPairForce = maxPairForce;
+            this.minDistance = minDistance;
+        }
+
+        void build(ParticleStore particles) {
+            count = particles.size;
+            if (xs.length < count) {
+                xs = new double[count * 2];
+                ys = new double[count * 2];
+                ms = new double[count * 2];
+                order = new int[count * 2];
+                rank = new int[count * 2];
+            }
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            System.arraycopy(particles.x, 0, xs, 0, count);
+            System.arraycopy(particles.y, 0, ys, 0, count);
+            System.arraycopy(particles.mass, 0, ms, 0, count);
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+
+            nodeCount = 0;
+            if (count > 0) {
+                double half = Math.max(maxX - minX, maxY - minY) / 2 + 1;
+                buildNode(0, count, (minX + maxX) / 2, (minY + maxY) / 2, half, 0);
+            }
+            for (int k = 0; k < count; k++) {
+                rank[order[k]] = k;
+            }
+        }
+
+        private int buildNode(int from, int to, double cx, double cy, double half, int depth) {
+            int node = allocateNode();
+            start[node] = from;
+            end[node] = to;
+            size[node] = half * 2;
+
+            if (to - from <= LEAF_CAPACITY || depth == MAX_DEPTH) {
+                double sx = 0, sy = 0, m = 0;
+                for (int k = from; k < to; k++) {
+                    int j = order[k];
+                    sx += xs[j] * ms[j];
+                    sy += ys[j] * ms[j];
+                    m += ms[j];
+                }
+                mass[node] = m;
+                comX[node] = sx / m;
+                comY[node] = sy / m;
+                return node;
+            }
+
+            // Split the range into quadrants: top/bottom first, then left/right of each
+            int midY = partition(from, to, ys, cy);
+            int[] bounds = { from, partition(from, midY, xs, cx), midY, partition(midY, to, xs, cx), to };
+            double quarter = half / 2;
+            double sx = 0, sy = 0, m = 0;
+            for (int q = 0; q < 4; q++) {
+                int child = -1;
+                if (bounds[q + 1] > bounds[q]) {
+                    child = buildNode(bounds[q], bounds[q + 1], cx + (q % 2 == 0 ? -quarter : quarter),
+                            cy + (q < 2 ? -quarter : quarter), quarter, depth + 1);
+                    sx += comX[child] * mass[child];
+                    sy += comY[child] * mass[child];
+                    m += mass[child];
+                }
+                children[node * 4 + q] = child;
+            }
+            mass[node] = m;
+            comX[node] = sx / mass[node];
+            comY[node] = sy / mass[node];
+            return node;
+        }
+
+        // Moves the particles in [from, to) with coordinate below pivot to the front
+        private int partition(int from, int to, double[] coordinate, double pivot) {
+            int i = from;
+            for (int k = from; k < to; k++) {
+                if (coordinate[order[k]] < pivot) {
+                    int t = order[i];
+                    order[i++] = order[k];
+                    order[k] = t;
+                }
+            }
+            return i;
+        }
+
+        private int allocateNode() {
+            if (nodeCount == start.length) {
+                int capacity = Math.max(64, nodeCount * 2);
+                start = Arrays.copyOf(start, capacity);
+                end = Arrays.copyOf(end, capacity);
+                children = Arrays.copyOf(children, capacity * 4);
+                size = Arrays.copyOf(size, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                comX = Arrays.copyOf(comX, capacity);
+                comY = Arrays.copyOf(comY, capacity);
+            }
+            Arrays.fill(children, nodeCount * 4, nodeCount * 4 + 4, -1);
+            return nodeCount++;
+        }
+
+        // Traversal stack for accelerate; one per thread
+        int[] newStack() {
+            return new int[4 * MAX_DEPTH + 4];
+        }
+
+        // Force on particle self at (x, y) from all others, written to out[0], out[1], and
+        // the summed G m / r^3 of the same interactions to out[2].
+        // Only reads the tree, so threads may call it concurrently with their own stacks.
+        void accelerate(int self, double x, double y, double theta, double[] out, int[] stack) {
+            double fx = 0, fy = 0, tidal = 0;
+            double thetaSq = theta * theta;
+            int top = 0;
+            if (nodeCount > 0) {
+                stack[top++] = 0;
+            }
+
+            while (top > 0) {
+                int node = stack[--top];
+                double dx = comX[node] - x;
+                double dy = comY[node] - y;
+                double distSq = dx * dx + dy * dy;
+
+                if (children[node * 4] == -1 && children[node * 4 + 1] == -1
+                        && children[node * 4 + 2] == -1 && children[node * 4 + 3] == -1) {
+                    for (int k = start[node]; k < end[node]; k++) {
+                        int j = order[k];
+                        if (j != self) {
+                            double pdx = xs[j] - x;
+                            double pdy = ys[j] - y;
+                            double pairDistSq = pdx * pdx + pdy * pdy + softSq;
+                            double dist = Math.sqrt(pairDistSq);
+                            if (dist > minDistance) {
+                                double force = Math.min(strength * ms[j] / pairDistSq, maxPairForce * ms[j]);
+                                fx += pdx / dist * force;
+                                fy += pdy / dist * force;
+                                tidal += force / dist;
+                            }
+                        }
+                    }
+                } else if (size[node] * size[node] < thetaSq * distSq
+                        && (rank[self] < start[node] || rank[self] >= end[node])) {
+                    // Far enough away to act as one body at its centre of mass. A node holding
+                    // self is always opened, since its monopole would include self's own mass.
+                    double softDistSq = distSq + softSq;
+                    double dist = Math.sqrt(softDistSq);
+                    double force = Math.min(strength * mass[node] / softDistSq, maxPairForce * mass[node]);
+                    fx += dx / dist * force;
+                    fy += dy / dist * force;
+                    tidal += force / dist;
+                } else {
+                    for (int q = 0; q < 4; q++) {
+                        if (children[node * 4 + q] >= 0) {
+                            stack[top++] = children[node * 4 + q];
+                        }
+                    }
+                }
+            }
+
+            out[0] = fx;
+            out[1] = fy;
+            out[2] = tidal;
+        }
+
+        // The all-pairs force on particle self over the same snapshot, for checking
+        void exactAccelerate(int self, double[] out) {
+            double fx = 0, fy = 0;
+            for (int j = 0; j < count; j++) {
+                if (j != self) {
+                    double dx = xs[j] - xs[self];
+                    double dy = ys[j] - ys[self];
+                    double distSq = dx * dx + dy * dy + softSq;
+                    double dist = Math.sqrt(distSq);
+                    if (dist > minDistance) {
+                        double force = Math.min(strength * ms[j] / distSq, maxPairForce * ms[j]);
+                        fx += dx / dist * force;
+                        fy += dy / dist * force;
+                    }
+                }
+            }
+            out[0] = fx;
+            out[1] = fy;
+        }
+
+        // Mean relative force error of the tree against the exact sum over a random sample
+        double sampleError(double theta, int samples) {
+            if (count < 2)
+                return 0;
+            double[] approx = new double[3];
+            double[] exact = new double[2];
+            int[] stack = newStack();
+            double total = 0;
+            int n = Math.min(samples, count);
+            for (int s = 0; s < n; s++) {
+                int i = random.nextInt(count);
+                accelerate(i, xs[i], ys[i], theta, approx, stack);
+                exactAccelerate(i, exact);
+                double magnitude = Math.hypot(exact[0], exact[1]);
+                total += magnitude > 0 ? Math.hypot(approx[0] - exact[0], approx[1] - exact[1]) / magnitude : 0;
+            }
+            return total / n;
         }
     }
 
@@ -523,6 +1778,20 @@ public class ParticleGravitySimulation extends JPanel {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            try {
+                BatchRunner.run(args);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(BatchRunner.USAGE);
+                System.exit(2);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Interactive Orbital Particle Simulation");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -0,0 +1,93 @@
+import java.util.Random;
+
+// Regression checks for ParticleGravitySimulation.SpatialGrid. Run with:
+//   javac -d out *.java && java -cp out SpatialGridTest
+public class SpatialGridTest {
+    public static void main(String[] args) {
+        growsAfterFullCapacityRebuild();
+        matchesBruteForce();
+        shrinksCellsAgain();
+        picksAfterMerge();
+        System.out.println("SpatialGridTest passed");
+    }
+
+    // A rebuild at exactly the store's capacity, then one more particle, used to
+    // overrun the link arrays in update()
+    private static void growsAfterFullCapacityRebuild() {
+        ParticleGravitySimulation.ParticleStore ps = new ParticleGravitySimulation.ParticleStore(4);
+        ParticleGravitySimulation.SpatialGrid grid = new ParticleGravitySimulation.SpatialGrid();
+        while (ps.size < ps.x.length) {
+            ps.add(ps.size * 3.0, 0, 0, 0);
+        }
+        grid.update(ps, 10);
+        ps.add(-5, -5, 0, 0);
+        grid.update(ps, 10);
+        check(contains(grid, grid.near(-5, -5), ps.size - 1), "new particle missing after growth");
+    }
+
+    // Cells sized for one heavy body must not stay that large once it is gone
+    private static void shrinksCellsAgain() {
+        ParticleGravitySimulation.ParticleStore ps = new ParticleGravitySimulation.ParticleStore(4);
+        ParticleGravitySimulation.SpatialGrid grid = new ParticleGravitySimulation.SpatialGrid();
+        for (int i = 0; i < 100; i++) {
+            ps.add(i * 20.0, 0, 0, 0);
+        }
+        grid.update(ps, 1000);
+        check(grid.near(0, 0) == ps.size, "large cells should cover the whole row");
+        grid.update(ps, 10);
+        check(grid.near(0, 0) <= 2, "cells did not shrink back");
+    }
+
+    // A merge swap-removes particles after the grid update; picking must not see the
+    // old indices. Particle 1 merges into 0, so particle 2 moves into slot 1.
+    private static void picksAfterMerge() {
+        ParticleGravitySimulation.Simulation sim = new ParticleGravitySimulation.Simulation(1000, 1000);
+        sim.collisions = ParticleGravitySimulation.Simulation.COLLISIONS_MERGE;
+        sim.particles.add(100, 100, 0, 0);
+        sim.particles.add(101, 100, 0, 0);
+        sim.particles.add(500, 500, 0, 0);
+        sim.setMouse(new java.awt.Point(500, 500), false, false);
+        sim.step();
+        check(sim.particles.size == 2, "the touching pair did not merge");
+        check(sim.picked == 1, "picked " + sim.picked + " instead of the moved particle");
+    }
+
+    private static void matchesBruteForce() {
+        ParticleGravitySimulation.ParticleStore ps = new ParticleGravitySimulation.ParticleStore(4);
+        ParticleGravitySimulation.SpatialGrid grid = new ParticleGravitySimulation.SpatialGrid();
+        Random random = new Random(1);
+        double cell = 8;
+        for (int step = 0; step < 20; step++) {
+            for (int k = 0; k < 37; k++) {
+                ps.add(random.nextDouble() * 400 - 200, random.nextDouble() * 400 - 200, 0, 0);
+            }
+            for (int i = 0; i < ps.size; i++) {
+                ps.x[i] += random.nextGaussian() * 3;
+                ps.y[i] += random.nextGaussian() * 3;
+            }
+            grid.update(ps, cell);
+            double qx = random.nextDouble() * 400 - 200, qy = random.nextDouble() * 400 - 200;
+            int count = grid.near(qx, qy);
+            for (int i = 0; i < ps.size; i++) {
+                if (Math.hypot(ps.x[i] - qx, ps.y[i] - qy) <= cell) {
+                    check(contains(grid, count, i), "particle " + i + " missed at step " + step);
+                }
+            }
+        }
+    }
+
+    private static boolean contains(ParticleGravitySimulation.SpatialGrid grid, int count, int i) {
+        for (int k = 0; k < count; k++) {
+            if (grid.found[k] == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}